@@ -1,28 +1,34 @@
 package com.softwareengineering.finsage.controllers;
 
 import com.softwareengineering.finsage.dao.BudgetDao;
-import com.softwareengineering.finsage.dao.CategoryDao;
+import com.softwareengineering.finsage.dao.RollupCell;
 import com.softwareengineering.finsage.dao.TransactionDao;
 import com.softwareengineering.finsage.model.Budget;
+import com.softwareengineering.finsage.model.BudgetSnapshot;
 import com.softwareengineering.finsage.model.Category;
+import com.softwareengineering.finsage.model.Money;
 import com.softwareengineering.finsage.model.Transaction;
+import com.softwareengineering.finsage.utils.CategoryDictionary;
 import com.softwareengineering.finsage.utils.UserLoginState;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 public class BudgetController {
     private BudgetDao budgetDao;
     private TransactionDao transactionDao;
-    private CategoryDao categoryDao;
+    private BudgetSnapshot snapshot;
+    private String snapshotUserId;
+    private long snapshotVersion;
 
     public BudgetController() {
         this.budgetDao = new BudgetDao();
         this.transactionDao = new TransactionDao();
-        this.categoryDao = new CategoryDao();
     }
 
     public List<Budget> getBudgetsByMonth(YearMonth month) {
@@ -46,36 +52,56 @@ public class BudgetController {
     }
 
     public BigDecimal getTotalSpentAmount(YearMonth month) {
-        LocalDate startDate = month.atDay(1);
-        LocalDate endDate = month.atEndOfMonth();
-        return transactionDao.getNetExpenseByDateRange(startDate, endDate, getCurrentUserId());
+        return transactionDao.getRollupTotal(getCurrentUserId(), month, null, true);
     }
 
     public BigDecimal getSpentAmount(YearMonth month, String categoryId) {
-        LocalDate startDate = month.atDay(1);
-        LocalDate endDate = month.atEndOfMonth();
-
         if (categoryId == null) {
             return getTotalSpentAmount(month);
         } else {
-            return transactionDao.getByUserIdAndDateRange(getCurrentUserId(), startDate, endDate).stream()
-                    .filter(t -> t.getCategoryId().equals(categoryId))
-                    .map(t -> {
-                        if (t.getAmount().compareTo(BigDecimal.ZERO) < 0) {
-                            return t.getAmount().abs();
-                        }
-                        return BigDecimal.ZERO;
-                    })
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            return transactionDao.getRollupTotal(getCurrentUserId(), month, categoryId, true);
+        }
+    }
+
+    /**
+     * Every budget of the month with its spent, remaining and progress, plus the month's
+     * total, from one read of the budgets and one pass over the month's rollup. The
+     * snapshot is kept until transactions or budgets change, so the budget table can ask
+     * for it once per cell.
+     */
+    public BudgetSnapshot getMonthSnapshot(YearMonth month) {
+        String userId = getCurrentUserId();
+        long version = transactionDao.getVersion() + budgetDao.getVersion();
+        BudgetSnapshot cached = snapshot;
+        if (cached != null && cached.getMonth().equals(month) && Objects.equals(userId, snapshotUserId)
+                && version == snapshotVersion) {
+            return cached;
+        }
+        Map<String, long[]> cents = new HashMap<>();
+        long totalCents = 0;
+        for (RollupCell cell : transactionDao.getRollup(userId, month, month)) {
+            if (cell.expense()) {
+                long[] total = cents.computeIfAbsent(cell.categoryId(), k -> new long[1]);
+                total[0] = Money.add(total[0], cell.cents());
+                totalCents = Money.add(totalCents, cell.cents());
+            }
         }
+        Map<String, BigDecimal> spent = new HashMap<>(cents.size() * 2);
+        cents.forEach((categoryId, total) -> spent.put(categoryId, Money.toBigDecimal(total[0])));
+        cached = new BudgetSnapshot(month, budgetDao.getByMonthAndUserId(month, userId), spent,
+                Money.toBigDecimal(totalCents));
+        snapshot = cached;
+        snapshotUserId = userId;
+        snapshotVersion = version;
+        return cached;
     }
 
     public List<Category> getCategories() {
-        return categoryDao.getByUserId(getCurrentUserId());
+        return CategoryDictionary.getInstance().getCategories(getCurrentUserId());
     }
 
     public Category getCategoryById(String categoryId) {
-        return categoryDao.getById(categoryId);
+        return CategoryDictionary.getInstance().getById(getCurrentUserId(), categoryId);
     }
 
     public String getCurrentUserId() {
@@ -3,7 +3,9 @@ package com.softwareengineering.finsage.controllers;
 
 import com.softwareengineering.finsage.dao.CategoryDao;
 import com.softwareengineering.finsage.dao.TransactionDao;
+import com.softwareengineering.finsage.dao.TransactionQuery;
 import com.softwareengineering.finsage.model.Category;
+import com.softwareengineering.finsage.utils.CategoryDictionary;
 import com.softwareengineering.finsage.utils.UserLoginState;
 
 import java.util.List;
@@ -16,25 +18,28 @@ public class CategoryController {
     }
 
     public List<Category> getCategories() {
-        return categoryDao.getByUserId(UserLoginState.getCurrentUserId());
+        return CategoryDictionary.getInstance().getCategories(UserLoginState.getCurrentUserId());
     }
 
     public boolean addCategory(Category category) {
-        if (categoryDao.getByUserId(UserLoginState.getCurrentUserId()).stream()
-                .anyMatch(c -> c.getName().equalsIgnoreCase(category.getName()))) {
+        String userId = UserLoginState.getCurrentUserId();
+        if (CategoryDictionary.getInstance().getByName(userId, category.getName()) != null) {
             return false;
         }
 
         category.setId(java.util.UUID.randomUUID().toString());
         categoryDao.save(category);
+        CategoryDictionary.getInstance().invalidate(userId);
         return true;
     }
 
     public boolean deleteCategory(String categoryId) {
         // Check if category is used by any transactions
         TransactionDao transactionDao = new TransactionDao();
-        boolean isUsed = transactionDao.getByUserId(UserLoginState.getCurrentUserId()).stream()
-                .anyMatch(t -> t.getCategoryId().equals(categoryId));
+        String userId = UserLoginState.getCurrentUserId();
+        boolean isUsed = !transactionDao.find(TransactionQuery.forUser(userId)
+                .category(categoryId)
+                .limit(1)).isEmpty();
 
         if (isUsed) {
             return false;
@@ -1,14 +1,19 @@
 // File: com.softwareengineering.finsage.controllers.FestivalVisionController.java
 package com.softwareengineering.finsage.controllers;
 
+import com.softwareengineering.finsage.dao.TransactionQuery;
 import com.softwareengineering.finsage.model.Category;
+import com.softwareengineering.finsage.model.FestivalSpending;
 import com.softwareengineering.finsage.model.Holiday;
 import com.softwareengineering.finsage.model.Transaction;
+import com.softwareengineering.finsage.utils.CategoryDictionary;
+import com.softwareengineering.finsage.utils.FestivalSpendingJoin;
 import com.softwareengineering.finsage.utils.UserLoginState;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class FestivalVisionController {
     private TransactionController transactionController;
@@ -26,17 +31,9 @@ public class FestivalVisionController {
     }
 
     public List<Transaction> getFilteredTransactions(String categoryId, Holiday holiday) {
-        List<Transaction> transactions = transactionController.getTransactions();
-
-        return transactions.stream()
-                .filter(t -> categoryId == null || t.getCategoryId().equals(categoryId))
-                .filter(t -> {
-                    if (holiday == null) return true;
-                    LocalDate transactionDate = t.getDate(); // Assuming getDate() returns LocalDate
-                    return !transactionDate.isBefore(holiday.getStartDate()) &&
-                            !transactionDate.isAfter(holiday.getEndDate());
-                })
-                .collect(Collectors.toList());
+        return transactionController.findTransactions(transactionController.query()
+                .category(categoryId)
+                .between(holiday != null ? holiday.getStartDate() : null, holiday != null ? holiday.getEndDate() : null));
     }
 
     public List<Category> getCategories() {
@@ -47,10 +44,45 @@ public class FestivalVisionController {
         return holidayController.getHolidays();
     }
 
+    /**
+     * Spending of every holiday, in start-date order, each with the same dates one year
+     * earlier for comparison; only the transactions inside those windows are read, in date
+     * order, and joined with all holidays in one pass.
+     */
+    public List<FestivalSpending> getFestivalSpending() {
+        return getFestivalSpending(holidayController.getHolidaysSortedByStart());
+    }
+
+    public FestivalSpending getFestivalSpending(Holiday holiday) {
+        return getFestivalSpending(List.of(holiday)).get(0);
+    }
+
+    private List<FestivalSpending> getFestivalSpending(List<Holiday> holidays) {
+        List<LocalDate[]> windows = new ArrayList<>();
+        for (Holiday holiday : holidays) {
+            windows.add(new LocalDate[]{holiday.getStartDate(), holiday.getEndDate()});
+            windows.add(new LocalDate[]{holiday.getStartDate().minusYears(1), holiday.getEndDate().minusYears(1)});
+        }
+        windows.sort(Comparator.comparing((LocalDate[] w) -> w[0]));
+        List<Transaction> transactions = new ArrayList<>();
+        int i = 0;
+        while (i < windows.size()) {
+            // Windows that overlap or touch are read as one range so no day is read twice
+            LocalDate from = windows.get(i)[0];
+            LocalDate to = windows.get(i)[1];
+            for (i++; i < windows.size() && !windows.get(i)[0].isAfter(to.plusDays(1)); i++) {
+                if (windows.get(i)[1].isAfter(to)) {
+                    to = windows.get(i)[1];
+                }
+            }
+            transactions.addAll(transactionController.findTransactions(transactionController.query()
+                    .between(from, to)
+                    .sortBy(TransactionQuery.Sort.DATE_ASC)));
+        }
+        return FestivalSpendingJoin.join(holidays, transactions);
+    }
+
     public Category getCategoryById(String categoryId) {
-        return getCategories().stream()
-                .filter(c -> c.getId().equals(categoryId))
-                .findFirst()
-                .orElse(null);
+        return CategoryDictionary.getInstance().getById(UserLoginState.getCurrentUserId(), categoryId);
     }
 }
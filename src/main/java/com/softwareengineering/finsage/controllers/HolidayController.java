@@ -17,6 +17,10 @@ public class HolidayController {
         return holidayDao.getByUserId(UserLoginState.getCurrentUserId());
     }
 
+    public List<Holiday> getHolidaysSortedByStart() {
+        return holidayDao.getByUserIdSortedByStart(UserLoginState.getCurrentUserId());
+    }
+
     public boolean addHoliday(Holiday holiday) {
         if (holidayDao.existsByNameAndUserId(holiday.getName(), holiday.getUserId())) {
             return false;
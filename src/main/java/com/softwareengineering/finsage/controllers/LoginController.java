@@ -57,13 +57,7 @@ public class LoginController {
                     DialogUtil.showErrorDialog("Login Error", "Invalid phone format.");
                     return;
                 }
-                // Assuming you have a getByPhone method in UserDao
-                for (User u : userDao.getAll()) {
-                    if (u.getPhone().equals(identifier)) {
-                        user = u;
-                        break;
-                    }
-                }
+                user = userDao.getByPhone(identifier);
             }
 
             if (user == null) {
@@ -2,8 +2,12 @@
 package com.softwareengineering.finsage.controllers;
 
 import com.softwareengineering.finsage.dao.TransactionDao;
+import com.softwareengineering.finsage.dao.TransactionQuery;
+import com.softwareengineering.finsage.model.BudgetAlert;
 import com.softwareengineering.finsage.model.Category;
 import com.softwareengineering.finsage.model.Transaction;
+import com.softwareengineering.finsage.utils.AnomalyDetector;
+import com.softwareengineering.finsage.utils.CategoryDictionary;
 import com.softwareengineering.finsage.utils.TransactionImporter;
 import com.softwareengineering.finsage.utils.UserLoginState;
 
@@ -12,7 +16,6 @@ import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class NormalVisionController {
     private TransactionController transactionController;
@@ -35,25 +38,31 @@ public class NormalVisionController {
             BigDecimal minAmount,
             BigDecimal maxAmount) {
 
-        List<Transaction> transactions = transactionController.getTransactions();
+        return getFilteredTransactions(type, categoryId, startDate, endDate, minAmount, maxAmount, false);
+    }
 
-        return transactions.stream()
-                .filter(t -> {
-                    // Filter by type
-                    if ("INCOME".equals(type) && t.getAmount().compareTo(BigDecimal.ZERO) < 0) {
-                        return false;
-                    }
-                    if ("EXPENSE".equals(type) && t.getAmount().compareTo(BigDecimal.ZERO) > 0) {
-                        return false;
-                    }
-                    return true;
-                })
-                .filter(t -> categoryId == null || t.getCategoryId().equals(categoryId))
-                .filter(t -> startDate == null || !t.getDate().isBefore(startDate))
-                .filter(t -> endDate == null || !t.getDate().isAfter(endDate))
-                .filter(t -> minAmount == null || t.getAmount().compareTo(minAmount) >= 0)
-                .filter(t -> maxAmount == null || t.getAmount().compareTo(maxAmount) <= 0)
-                .collect(Collectors.toList());
+    /**
+     * Like the other overload; with {@code anomaliesOnly}, narrows the flagged
+     * transactions of the {@link AnomalyDetector} instead of querying the ledger.
+     */
+    public List<Transaction> getFilteredTransactions(
+            String type,
+            String categoryId,
+            LocalDate startDate,
+            LocalDate endDate,
+            BigDecimal minAmount,
+            BigDecimal maxAmount,
+            boolean anomaliesOnly) {
+
+        TransactionQuery query = transactionController.query()
+                .type(type)
+                .category(categoryId)
+                .between(startDate, endDate)
+                .amountBetween(minAmount, maxAmount);
+        if (anomaliesOnly) {
+            return AnomalyDetector.getInstance().getAnomalies(UserLoginState.getCurrentUserId(), query);
+        }
+        return transactionController.findTransactions(query);
     }
 
     public List<Category> getCategories() {
@@ -61,16 +70,21 @@ public class NormalVisionController {
     }
 
     public Category getCategoryById(String categoryId) {
-        return getCategories().stream()
-                .filter(c -> c.getId().equals(categoryId))
-                .findFirst()
-                .orElse(null);
+        return CategoryDictionary.getInstance().getById(UserLoginState.getCurrentUserId(), categoryId);
     }
 
     public boolean deleteTransaction(String transactionId) {
         return transactionController.deleteTransaction(transactionId);
     }
 
+    public List<BudgetAlert> takeBudgetAlerts() {
+        return transactionController.takeBudgetAlerts();
+    }
+
+    public String describeBudgetAlert(BudgetAlert alert) {
+        return transactionController.describeBudgetAlert(alert);
+    }
+
     public boolean importTransactions(Path filePath) {
         try {
             TransactionImporter importer = new TransactionImporter(
@@ -1,88 +1,83 @@
 package com.softwareengineering.finsage.controllers;
 
-import com.softwareengineering.finsage.dao.CategoryDao;
+import com.softwareengineering.finsage.dao.RollupCell;
 import com.softwareengineering.finsage.dao.TransactionDao;
-import com.softwareengineering.finsage.model.Category;
+import com.softwareengineering.finsage.model.Money;
 import com.softwareengineering.finsage.model.Transaction;
+import com.softwareengineering.finsage.utils.CategoryDictionary;
 import com.softwareengineering.finsage.utils.UserLoginState;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 public class StatisticsController {
     private TransactionDao transactionDao;
-    private CategoryDao categoryDao;
 
     public StatisticsController() {
         this.transactionDao = new TransactionDao();
-        this.categoryDao = new CategoryDao();
     }
 
     public List<Transaction> getTransactions(boolean isExpense, YearMonth month) {
         String userId = UserLoginState.getCurrentUserId();
-        List<Transaction> transactions = transactionDao.getByUserId(userId);
+        List<Transaction> transactions = month == null
+                ? transactionDao.getByUserId(userId)
+                : transactionDao.getByMonthAndUserId(month, userId);
 
         return transactions.stream()
-                .filter(t -> isExpense ? t.getAmount().compareTo(BigDecimal.ZERO) < 0 : t.getAmount().compareTo(BigDecimal.ZERO) > 0)
-                .filter(t -> month == null || YearMonth.from(t.getDate()).equals(month))
+                .filter(t -> isExpense ? t.getAmountCents() < 0 : t.getAmountCents() > 0)
                 .collect(Collectors.toList());
     }
 
     public List<Transaction> getTop10Transactions(boolean isExpense, YearMonth month) {
-        return getTransactions(isExpense, month).stream()
-                .sorted(Comparator.comparing(t -> isExpense ? t.getAmount() : t.getAmount().negate(), Comparator.reverseOrder()))
-                .limit(10)
-                .collect(Collectors.toList());
+        return transactionDao.getTopTransactions(UserLoginState.getCurrentUserId(), month, isExpense, 10);
     }
 
     public Map<String, BigDecimal> getCategorySummary(boolean isExpense, YearMonth month) {
         String userId = UserLoginState.getCurrentUserId();
-        List<Transaction> transactions = getTransactions(isExpense, month);
+        List<RollupCell> cells = transactionDao.getRollup(userId, month, month);
 
-        return transactions.stream()
-                .collect(Collectors.groupingBy(
-                        Transaction::getCategoryId,
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                t -> isExpense ? t.getAmount().abs() : t.getAmount(),
-                                BigDecimal::add
-                        )
-                ));
+        Map<String, long[]> cents = new HashMap<>();
+        for (RollupCell cell : cells) {
+            if (cell.expense() == isExpense) {
+                long[] total = cents.computeIfAbsent(cell.categoryId(), k -> new long[1]);
+                total[0] = Money.add(total[0], cell.cents());
+            }
+        }
+        return toAmounts(cents);
     }
 
     public Map<YearMonth, BigDecimal> getMonthlySummary(boolean isExpense) {
         String userId = UserLoginState.getCurrentUserId();
-        List<Transaction> transactions = getTransactions(isExpense, null);
+        List<RollupCell> cells = transactionDao.getRollup(userId, null, null);
 
-        return transactions.stream()
-                .collect(Collectors.groupingBy(
-                        t -> YearMonth.from(t.getDate()),
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                t -> isExpense ? t.getAmount().abs() : t.getAmount(),
-                                BigDecimal::add
-                        )
-                ));
+        Map<YearMonth, long[]> cents = new HashMap<>();
+        for (RollupCell cell : cells) {
+            if (cell.expense() == isExpense) {
+                long[] total = cents.computeIfAbsent(cell.month(), k -> new long[1]);
+                total[0] = Money.add(total[0], cell.cents());
+            }
+        }
+        return toAmounts(cents);
     }
 
     public String getCategoryName(String categoryId) {
-        return categoryDao.findById(categoryId)
-                .map(Category::getName)
-                .orElse("Unknown");
+        String name = CategoryDictionary.getInstance().getName(UserLoginState.getCurrentUserId(), categoryId);
+        return name != null ? name : "Unknown";
     }
 
     public BigDecimal getTotalAmount(boolean isExpense, YearMonth month) {
-        String userId = UserLoginState.getCurrentUserId();
-        List<Transaction> transactions = getTransactions(isExpense, month);
+        return transactionDao.getRollupTotal(UserLoginState.getCurrentUserId(), month, null, isExpense);
+    }
 
-        return transactions.stream()
-                .map(t -> isExpense ? t.getAmount().abs() : t.getAmount())
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private static <K> Map<K, BigDecimal> toAmounts(Map<K, long[]> cents) {
+        Map<K, BigDecimal> amounts = new HashMap<>(cents.size() * 2);
+        cents.forEach((key, total) -> amounts.put(key, Money.toBigDecimal(total[0])));
+        return amounts;
     }
 }
@@ -75,10 +75,9 @@ public class ThirdPartyLoginController {
                 final String finalServiceUsername = serviceUsername;
                 final String finalServicePassword = servicePassword;
 
-                ThirdParty thirdPartyAccount = thirdPartyDao.getAll().stream()
-                        .filter(tp -> tp.getServiceName().equalsIgnoreCase(finalServiceName) &&
-                                tp.getServiceUsername().equals(finalServiceUsername) &&
-                                tp.getServicePassword().equals(finalServicePassword))
+                ThirdParty thirdPartyAccount = thirdPartyDao.getByServiceNameAndServiceUsername(
+                                finalServiceName, finalServiceUsername).stream()
+                        .filter(tp -> tp.getServicePassword().equals(finalServicePassword))
                         .findFirst()
                         .orElse(null);
 
@@ -88,10 +87,7 @@ public class ThirdPartyLoginController {
                 }
 
                 final String thirdPartyUserId = thirdPartyAccount.getUserId();
-                User user = userDao.getAll().stream()
-                        .filter(u -> u.getId().equals(thirdPartyUserId))
-                        .findFirst()
-                        .orElse(null);
+                User user = userDao.getById(thirdPartyUserId);
 
                 if (user == null) {
                     DialogUtil.showErrorDialog("Login Failed", "No user account associated with this third-party account.");
@@ -1,10 +1,14 @@
 // File: com.softwareengineering.finsage.controllers.TransactionController.java
 package com.softwareengineering.finsage.controllers;
 
-import com.softwareengineering.finsage.dao.CategoryDao;
 import com.softwareengineering.finsage.dao.TransactionDao;
+import com.softwareengineering.finsage.dao.TransactionQuery;
+import com.softwareengineering.finsage.model.Budget;
+import com.softwareengineering.finsage.model.BudgetAlert;
 import com.softwareengineering.finsage.model.Category;
 import com.softwareengineering.finsage.model.Transaction;
+import com.softwareengineering.finsage.utils.BudgetAlertEngine;
+import com.softwareengineering.finsage.utils.CategoryDictionary;
 import com.softwareengineering.finsage.utils.UserLoginState;
 
 import java.math.BigDecimal;
@@ -12,17 +16,29 @@ import java.util.List;
 
 public class TransactionController {
     private TransactionDao transactionDao;
-    private CategoryDao categoryDao;
 
     public TransactionController() {
         this.transactionDao = new TransactionDao();
-        this.categoryDao = new CategoryDao();
+        // Subscribes the alert engine before this controller writes anything.
+        BudgetAlertEngine.getInstance();
     }
 
     public List<Transaction> getTransactions() {
         return transactionDao.getByUserId(UserLoginState.getCurrentUserId());
     }
 
+    /**
+     * A query over the current user's transactions, to narrow and pass to
+     * {@link #findTransactions}.
+     */
+    public TransactionQuery query() {
+        return TransactionQuery.forUser(UserLoginState.getCurrentUserId());
+    }
+
+    public List<Transaction> findTransactions(TransactionQuery query) {
+        return transactionDao.find(query);
+    }
+
     public List<Transaction> getTransactionsByType(boolean isIncome) {
         List<Transaction> transactions = getTransactions();
         transactions.removeIf(t -> (isIncome && t.getAmount().compareTo(BigDecimal.ZERO) < 0) ||
@@ -31,7 +47,7 @@ public class TransactionController {
     }
 
     public List<Category> getCategories() {
-        return categoryDao.getByUserId(UserLoginState.getCurrentUserId());
+        return CategoryDictionary.getInstance().getCategories(UserLoginState.getCurrentUserId());
     }
 
     public boolean addTransaction(Transaction transaction) {
@@ -52,7 +68,25 @@ public class TransactionController {
 
     public Category getCategoryById(String categoryId) {
         if (categoryId == null) return null;
-        return categoryDao.getById(categoryId);
+        return CategoryDictionary.getInstance().getById(UserLoginState.getCurrentUserId(), categoryId);
+    }
+
+    /**
+     * Budget alerts the current user's transaction writes raised since the last call.
+     */
+    public List<BudgetAlert> takeBudgetAlerts() {
+        return BudgetAlertEngine.getInstance().takeAlerts(UserLoginState.getCurrentUserId());
+    }
+
+    public String describeBudgetAlert(BudgetAlert alert) {
+        Budget budget = alert.getBudget();
+        Category category = getCategoryById(budget.getCategoryId());
+        String name = budget.isTotalBudget() ? "Total budget"
+                : (category != null ? category.getName() : "Unknown category") + " budget";
+        String state = alert.getSpent().compareTo(budget.getAmount()) > 0 ? "exceeded"
+                : "reached " + Math.round(alert.getThreshold() * 100) + "%";
+        return String.format("%s for %s %s: spent %,.2f of %,.2f", name, budget.getMonth(), state,
+                alert.getSpent(), budget.getAmount());
     }
 
 }
@@ -1,8 +1,6 @@
 package com.softwareengineering.finsage.dao;
 
 import com.softwareengineering.finsage.model.AbnormalConfig;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -14,12 +12,17 @@ public class AbnormalConfigDao extends BaseDao<AbnormalConfig> {
     private static final String[] HEADERS = {"id", "itemName", "threshold", "userId"};
     private static final String CSV_FILE = "data/abnormal_configs.csv";
 
+    private static final String BY_USER = "userId";
+    private static final String BY_USER_ITEM = "userId+itemName";
+
     public AbnormalConfigDao() {
         super(CSV_FILE, HEADERS);
+        addIndex(BY_USER, AbnormalConfig::getUserId);
+        addIndex(BY_USER_ITEM, AbnormalConfig::getUserId, ignoreCase(AbnormalConfig::getItemName));
     }
 
     @Override
-    protected void printRecord(CSVPrinter printer, AbnormalConfig config) throws IOException {
+    protected void printRecord(CsvWriter printer, AbnormalConfig config) throws IOException {
         printer.printRecord(
                 config.getId(),
                 config.getItemName(),
@@ -29,7 +32,7 @@ public class AbnormalConfigDao extends BaseDao<AbnormalConfig> {
     }
 
     @Override
-    protected AbnormalConfig parseRecord(CSVRecord record) {
+    protected AbnormalConfig parseRecord(CsvRow record) {
         AbnormalConfig config = new AbnormalConfig();
         config.setId(record.get("id"));
         config.setItemName(record.get("itemName"));
@@ -43,14 +46,17 @@ public class AbnormalConfigDao extends BaseDao<AbnormalConfig> {
         return config.getId();
     }
 
+    @Override
+    protected AbnormalConfig copy(AbnormalConfig config) {
+        return new AbnormalConfig(config.getId(), config.getItemName(), config.getThreshold(), config.getUserId());
+    }
+
     public List<AbnormalConfig> getByUserId(String userId) {
-        return findBy(c -> c.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId));
     }
 
     public Optional<AbnormalConfig> getByItemNameAndUserId(String itemName, String userId) {
-        return getAll().stream()
-                .filter(c -> c.getItemName().equalsIgnoreCase(itemName) && c.getUserId().equals(userId))
-                .findFirst();
+        return findFirst(indexed(BY_USER_ITEM, userId, itemName));
     }
 
     public boolean existsByItemNameAndUserId(String itemName, String userId) {
@@ -58,10 +64,10 @@ public class AbnormalConfigDao extends BaseDao<AbnormalConfig> {
     }
 
     public List<AbnormalConfig> findByThresholdGreaterThan(BigDecimal threshold, String userId) {
-        return findBy(c -> c.getThreshold().compareTo(threshold) > 0 && c.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId).and(c -> c.getThreshold().compareTo(threshold) > 0));
     }
 
     public List<AbnormalConfig> findByThresholdLessThan(BigDecimal threshold, String userId) {
-        return findBy(c -> c.getThreshold().compareTo(threshold) < 0 && c.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId).and(c -> c.getThreshold().compareTo(threshold) < 0));
     }
 }
@@ -1,25 +1,76 @@
 package com.softwareengineering.finsage.dao;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
-
 import java.io.*;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 public abstract class BaseDao<T> {
+    private static final String LAYOUT_FILE = "layout";
+    static final FsyncPolicy DEFAULT_FSYNC_POLICY = FsyncPolicy.fromSystemProperty();
+
     protected String csvFilePath;
     protected String[] headers;
+    private final boolean journaled;
+    private final Path partitionDirectory;
+    private final StoreRegistry.Shared<T> shared;
 
     public BaseDao(String csvFilePath, String[] headers) {
+        this(csvFilePath, headers, false);
+    }
+
+    /**
+     * @param journaled when true, writes are appended to {@code <csvFilePath>.journal}
+     *                  and periodically compacted into the CSV instead of rewriting
+     *                  the whole file on every save/update/delete
+     */
+    public BaseDao(String csvFilePath, String[] headers, boolean journaled) {
+        this(csvFilePath, headers, journaled, null);
+    }
+
+    /**
+     * @param partitionDirectory when not null, records are split into one CSV file per
+     *                           {@link #partitionOf partition key} under this directory,
+     *                           and {@code csvFilePath} is only read once to migrate an
+     *                           existing single-file layout into it
+     */
+    public BaseDao(String csvFilePath, String[] headers, boolean journaled, String partitionDirectory) {
         this.csvFilePath = csvFilePath;
         this.headers = headers;
-        createFileIfNotExists();
+        this.journaled = journaled;
+        this.partitionDirectory = partitionDirectory != null ? Paths.get(partitionDirectory) : null;
+        this.shared = StoreRegistry.get(this.partitionDirectory != null ? this.partitionDirectory
+                : Paths.get(csvFilePath), getClass());
+        this.shared.writer.bind(this);
+        if (this.partitionDirectory == null) {
+            createFileIfNotExists();
+        } else {
+            this.partitionDirectory.toFile().mkdirs();
+        }
     }
 
     protected void createFileIfNotExists() {
@@ -27,56 +78,563 @@ public abstract class BaseDao<T> {
             File file = new File(csvFilePath);
             if (!file.exists()) {
                 file.getParentFile().mkdirs();
-                try (CSVPrinter printer = new CSVPrinter(new FileWriter(csvFilePath),
-                        CSVFormat.DEFAULT.withHeader(headers))) {
-                    // Just create the file with headers
-                }
+                // Just create the file with headers
+                CsvWriter.create(file.toPath(), headers).close();
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    protected List<CSVRecord> readAllRecords() throws IOException {
-        try (Reader reader = Files.newBufferedReader(Paths.get(csvFilePath));
-             CSVParser csvParser = new CSVParser(reader,
-                     CSVFormat.DEFAULT.withFirstRecordAsHeader().withIgnoreHeaderCase().withTrim())) {
-            return csvParser.getRecords();
+    protected List<T> readAllRecords(Path path) throws IOException {
+        List<T> items = new ArrayList<>();
+        try (CsvReader reader = CsvReader.open(path)) {
+            while (reader.next()) {
+                items.add(parseRecord(reader.row()));
+            }
         }
+        return items;
     }
 
-    protected void writeAllRecords(List<T> items) throws IOException {
-        try (CSVPrinter printer = new CSVPrinter(new FileWriter(csvFilePath),
-                CSVFormat.DEFAULT.withHeader(headers))) {
+    protected void writeAllRecords(Path path, List<T> items) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (CsvWriter printer = CsvWriter.create(path, headers)) {
             for (T item : items) {
                 printRecord(printer, item);
             }
         }
     }
 
-    protected abstract void printRecord(CSVPrinter printer, T item) throws IOException;
-    protected abstract T parseRecord(CSVRecord record);
+    /**
+     * File suffix of partition snapshots. Anything other than {@code .csv} is read and
+     * written through {@link #readBinarySnapshot} and {@link #writeBinarySnapshot};
+     * journals and the single-file layout always stay CSV.
+     */
+    protected String snapshotSuffix() {
+        return ".csv";
+    }
+
+    protected List<T> readBinarySnapshot(Path path) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no binary snapshot format");
+    }
+
+    protected void writeBinarySnapshot(Path path, List<T> items) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no binary snapshot format");
+    }
+
+    List<T> readSnapshot(Path path, boolean csv) throws IOException {
+        return csv ? readAllRecords(path) : readBinarySnapshot(path);
+    }
+
+    /**
+     * Streams a snapshot record by record. The binary default decodes the whole file;
+     * formats that can decode a row at a time should override it.
+     */
+    protected Cursor<T> openBinarySnapshot(Path path) throws IOException {
+        return Cursor.of(readBinarySnapshot(path).iterator());
+    }
+
+    Cursor<T> openSnapshot(Path path, boolean csv) throws IOException {
+        if (!csv) {
+            return openBinarySnapshot(path);
+        }
+        CsvReader reader = CsvReader.open(path);
+        return new Cursor<>(new Iterator<T>() {
+            private Boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (ready == null) {
+                    try {
+                        ready = reader.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return ready;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = null;
+                return parseRecord(reader.row());
+            }
+        }, reader);
+    }
+
+    /**
+     * Replaces a snapshot atomically: the records go to {@code <path>.tmp} and the
+     * finished file is moved over the old one under the {@link #getFsyncPolicy fsync policy}.
+     */
+    void writeSnapshot(Path path, List<T> items, boolean csv) throws IOException {
+        Path temp = Paths.get(path + ".tmp");
+        try {
+            writeSnapshotFile(temp, items, csv);
+            shared.fsyncPolicy.publish(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes a snapshot straight to {@code path}, for callers that publish it themselves.
+     */
+    void writeSnapshotFile(Path path, List<T> items, boolean csv) throws IOException {
+        if (csv) {
+            writeAllRecords(path, items);
+        } else {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            writeBinarySnapshot(path, items);
+        }
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return shared.fsyncPolicy;
+    }
+
+    /**
+     * Sets when writes to this DAO's files are forced to disk; see {@link FsyncPolicy}.
+     * Applies to every DAO instance of the same file.
+     */
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        shared.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Number of successful save/update/delete calls on this DAO's file since startup,
+     * counted across every DAO instance of the file. Callers caching something derived
+     * from the records can compare it to tell whether the cache is stale.
+     */
+    public long getChangeCount() {
+        awaitWrites();
+        return shared.changes.get();
+    }
+
+    /**
+     * Moves whenever the records may have changed: on every change counted by
+     * {@link #getChangeCount} and whenever files are re-read after changing some other
+     * way, such as another process writing them. Equal versions mean equal records.
+     */
+    public long getVersion() {
+        return getChangeCount() + getReloadCount();
+    }
+
+    /**
+     * Called on the writer thread for every record this process changes, right after
+     * the record's file is written: {@code before} is null for an insert, {@code after}
+     * null for a delete. Subclasses keeping something derived from the records (running
+     * totals, say) update it here; changes this hook never sees, such as another
+     * process's writes, move {@link #getReloadCount} instead.
+     */
+    protected void changed(T before, T after) {
+    }
+
+    /**
+     * Runs {@code read} while this process commits no write, so a structure built from
+     * what it reads and then maintained through {@link #changed} neither misses a change
+     * nor counts one twice.
+     */
+    protected final <R> R readConsistently(Supplier<R> read) {
+        if (!Thread.holdsLock(shared.commitLock)) {
+            // Inside a commit (a change listener reading) nothing can be waiting to land.
+            shared.writer.flush();
+        }
+        synchronized (shared.commitLock) {
+            return read.get();
+        }
+    }
+
+    /**
+     * Number of times records changed without {@link #changed} being told: a file
+     * re-read after another process wrote it, a failed write, a migration. Files that
+     * may have changed since the last call are checked first, so a caller whose
+     * derived state was built at an equal count can trust it.
+     */
+    protected long getReloadCount() {
+        long seen = shared.events.get();
+        if (shared.unwatched || shared.checkedEvents.getAndSet(seen) != seen) {
+            try {
+                revalidateStores();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return shared.reloads.get();
+    }
+
+    /**
+     * State a subclass keeps beside the records, shared by every DAO instance of the
+     * same file; created by {@code create} on first use.
+     */
+    protected final <S> S attachment(Class<S> type, Supplier<S> create) {
+        return type.cast(shared.attachments.computeIfAbsent(type, k -> create.get()));
+    }
+
+    /**
+     * Runs {@code action} while no writer can touch this DAO's files: the cross-process
+     * lock and the commit lock are held, and the cached stores have been checked
+     * against the files.
+     */
+    <R> R lockedAgainstWriters(Supplier<R> action) throws IOException {
+        shared.writer.flush();
+        shared.lock.lock();
+        try {
+            revalidateStores();
+            synchronized (shared.commitLock) {
+                return action.get();
+            }
+        } finally {
+            shared.lock.unlock();
+        }
+    }
+
+    /**
+     * {@link CsvStore#fileStamp} of the partition's files, or "" if they cannot be read.
+     */
+    String stampOf(String partition) {
+        try {
+            return storeFor(partition).fileStamp();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return "";
+    }
+
+    Path groupDirectory(String group) {
+        return partitionDirectory.resolve(encodePartition(group));
+    }
+
+    void fileEvent() {
+        shared.events.incrementAndGet();
+    }
+
+    void reloaded() {
+        shared.reloads.incrementAndGet();
+        for (ChangeListener<T> listener : shared.listeners) {
+            try {
+                listener.reloaded();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Tells {@code listener} about every change written from now on by any DAO instance
+     * of this file in this process, one call per written batch.
+     */
+    public void addChangeListener(ChangeListener<T> listener) {
+        shared.listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener<T> listener) {
+        shared.listeners.remove(listener);
+    }
+
+    /**
+     * Makes save/update/delete return as soon as the write is queued instead of once it
+     * is on disk. Queued writes are applied in groups, each at most
+     * {@code maxLatencyMillis} after it was queued; with {@code capacity} writes queued,
+     * further writes wait for the next group. Reads still see every queued write, and
+     * queued writes are flushed on a clean exit. Applies to every DAO instance of the
+     * same file.
+     *
+     * <p>A queued write is acknowledged with true before it runs, so an update or delete
+     * of a missing record also returns true; writes that turn out not to apply are
+     * reported on standard error.
+     */
+    public void enableWriteBehind(int capacity, long maxLatencyMillis) {
+        shared.writer.writeBehind(capacity, maxLatencyMillis);
+    }
+
+    /**
+     * Applies the queued writes and returns to waiting for each write.
+     */
+    public void disableWriteBehind() {
+        shared.writer.writeThrough();
+    }
+
+    public boolean isWriteBehind() {
+        return shared.writer.isWriteBehind();
+    }
+
+    /**
+     * Waits until every write queued in write-behind mode is on disk.
+     */
+    public void flush() {
+        shared.writer.flush();
+    }
+
+    protected abstract void printRecord(CsvWriter printer, T item) throws IOException;
+    protected abstract T parseRecord(CsvRow record);
     protected abstract String getId(T item);
 
+    /**
+     * Returns a detached copy of the item. Reads hand out copies of the cached
+     * records so that callers editing an object before {@link #update} cannot
+     * change what the cache holds.
+     */
+    protected abstract T copy(T item);
+
+    /**
+     * Partition key of an item, used as its file name under the partition directory.
+     * A key of the form {@code group/segment} puts the file in a subdirectory per group;
+     * the segments of a group are listed in a manifest with their {@link #rangeKeyOf}
+     * bounds so {@link #segmentsOf} can skip the ones outside a range.
+     * Only called for DAOs constructed with a partition directory.
+     */
+    protected String partitionOf(T item) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not partitioned");
+    }
+
+    /**
+     * Sortable key recorded per segment in the manifest (e.g. an ISO date). Segment
+     * ranges are compared as strings.
+     */
+    protected String rangeKeyOf(T item) {
+        return null;
+    }
+
+    /**
+     * False for a key, read back from a file name under the partition directory, that
+     * names a sidecar file kept beside the partitions rather than a partition of this or
+     * an older {@link #partitionLayout}. Such files are never read or moved as partitions.
+     */
+    protected boolean isPartitionKey(String key) {
+        return true;
+    }
+
+    /**
+     * Name of the current partitioning scheme. When the name stored in the partition
+     * directory differs, existing files are re-split under the new scheme on first use.
+     */
+    protected String partitionLayout() {
+        return "flat";
+    }
+
+    /**
+     * Registers a hash index over the given key parts. Call from the subclass
+     * constructor; wrap a part with {@link #ignoreCase} to match it case-insensitively.
+     * The index is maintained on every save/update/delete and rebuilt on reload.
+     */
+    @SafeVarargs
+    protected final void addIndex(String name, Function<T, ?>... parts) {
+        synchronized (shared) {
+            if (shared.indexes.containsKey(name)) {
+                // Registered by an earlier instance of the same DAO.
+                return;
+            }
+            // Copied element by element: the varargs array itself is never kept.
+            List<Function<T, ?>> keyParts = new ArrayList<>(parts.length);
+            for (Function<T, ?> part : parts) {
+                keyParts.add(part);
+            }
+            SecondaryIndex<T> index = new SecondaryIndex<>(name, keyParts);
+            shared.indexes.put(name, index);
+            for (CsvStore<T> store : shared.stores.values()) {
+                store.addIndex(index.newEmpty());
+            }
+        }
+    }
+
+    /**
+     * Registers a sorted index on a numeric key, for {@link #findInRange}. Every record
+     * must have a key.
+     */
+    protected final void addRangeIndex(String name, ToLongFunction<T> key) {
+        synchronized (shared) {
+            if (shared.ranges.containsKey(name)) {
+                return;
+            }
+            RangeIndex<T> index = new RangeIndex<>(name, key);
+            shared.ranges.put(name, index);
+            for (CsvStore<T> store : shared.stores.values()) {
+                store.addRangeIndex(index);
+            }
+        }
+    }
+
+    /**
+     * Predicate "index {@code name} has key {@code values}". When passed to
+     * {@link #findBy} (optionally extended with {@code .and(...)}) the lookup is a
+     * hash probe rather than a scan.
+     */
+    protected final IndexedPredicate<T> indexed(String name, Object... values) {
+        SecondaryIndex<T> index;
+        synchronized (shared) {
+            index = shared.indexes.get(name);
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("No index named " + name);
+        }
+        return new IndexedPredicate<>(index, values, null);
+    }
+
+    protected static <T> Function<T, String> ignoreCase(Function<T, String> part) {
+        return new IgnoreCase<>(part);
+    }
+
+    static final class IgnoreCase<T> implements Function<T, String> {
+        private final Function<T, String> part;
+
+        private IgnoreCase(Function<T, String> part) {
+            this.part = part;
+        }
+
+        @Override
+        public String apply(T item) {
+            return part.apply(item);
+        }
+    }
+
+    /**
+     * Like {@link #findBy} but only reads the given partition's file. A null predicate
+     * returns the whole partition.
+     */
+    protected List<T> findInPartition(String partition, Predicate<T> predicate) {
+        return findInPartition(partition, predicate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #findInPartition(String, Predicate)} but stops after {@code limit}
+     * matches.
+     */
+    protected List<T> findInPartition(String partition, Predicate<T> predicate, int limit) {
+        try {
+            return select(storeFor(partition), predicate, limit);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Records of the partition whose key in range index {@code name} is in [from, to],
+     * in key order, that pass {@code residual} (null for all); at most {@code limit}.
+     * Costs two binary searches plus the size of the window.
+     */
+    protected List<T> findInRange(String partition, String name, long from, long to, Predicate<T> residual,
+                                  int limit) {
+        try {
+            return storeFor(partition).selectRange(name, from, to, residual, limit);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Upper bound on the number of records {@link #findInRange} would look at.
+     */
+    protected int estimateRange(String partition, String name, long from, long to) {
+        try {
+            return storeFor(partition).estimateRange(name, from, to);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Number of records in the partition.
+     */
+    protected int sizeOf(String partition) {
+        try {
+            return storeFor(partition).size();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Upper bound on the number of records in the partition whose key in index
+     * {@code name} is {@code values}, read from the index without fetching any record.
+     */
+    protected int estimateIndexed(String partition, String name, Object... values) {
+        IndexedPredicate<T> predicate = indexed(name, values);
+        try {
+            return storeFor(partition).estimate(name, predicate.getKey());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Segments of {@code group} whose range overlaps [fromKey, toKey], in key order.
+     */
+    protected List<String> segmentsOf(String group, String fromKey, String toKey) {
+        try {
+            return manifestFor(group).overlapping(fromKey, toKey);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
     public List<T> getAll() {
-        List<T> items = new ArrayList<>();
+        return findBy(null);
+    }
+
+    /**
+     * Lazily walks every record, partition by partition. Files that are not cached are
+     * parsed as the cursor advances, so a scan runs in constant memory and stops reading
+     * as soon as the cursor is closed. Close it (try-with-resources) if you stop early.
+     */
+    public Cursor<T> cursor() {
+        try {
+            PartitionChain chain = new PartitionChain(allPartitions().iterator());
+            return new Cursor<>(chain, chain);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return Cursor.of(Collections.emptyIterator());
+    }
+
+    /**
+     * {@link #cursor} as a stream; close the stream (try-with-resources) if it is not
+     * consumed to the end.
+     */
+    public Stream<T> stream() {
+        return cursor().stream();
+    }
+
+    public void forEach(Consumer<? super T> action) {
+        try (Cursor<T> cursor = cursor()) {
+            while (cursor.hasNext()) {
+                action.accept(cursor.next());
+            }
+        }
+    }
+
+    /**
+     * First record matching the predicate. Stops at the first match instead of
+     * collecting every match like {@link #findBy}.
+     */
+    public Optional<T> findFirst(Predicate<T> predicate) {
         try {
-            List<CSVRecord> records = readAllRecords();
-            for (CSVRecord record : records) {
-                items.add(parseRecord(record));
+            for (String partition : searchOrder()) {
+                T item = storeFor(partition).first(predicate);
+                if (item != null) {
+                    return Optional.of(item);
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return items;
+        return Optional.empty();
     }
 
     public T getById(String id) {
         try {
-            List<CSVRecord> records = readAllRecords();
-            for (CSVRecord record : records) {
-                if (getId(parseRecord(record)).equals(id)) {
-                    return parseRecord(record);
+            for (String partition : searchOrder()) {
+                T item = storeFor(partition).find(id);
+                if (item != null) {
+                    return item;
                 }
             }
         } catch (IOException e) {
@@ -90,103 +648,594 @@ public abstract class BaseDao<T> {
     }
 
     public boolean save(T item) {
-        List<T> items = getAll();
-        items.add(item);
-        try {
-            writeAllRecords(items);
+        return saveAll(Collections.singletonList(item));
+    }
+
+    public boolean saveAll(List<T> items) {
+        return shared.writer.submit(batch -> {
+            insertByPartition(batch, items);
+            return true;
+        });
+    }
+
+    public boolean update(T item) {
+        return shared.writer.submit(batch -> {
+            String id = getId(item);
+            String partition = partitionKey(item);
+            if (batch.contains(partition, id)) {
+                widenSegment(partition, Collections.singletonList(item));
+                batch.edit(partition).replace(item);
+                batch.refreshAfterCommit(partition);
+                return true;
+            }
+            // The partition key changed: move the record to its new file.
+            String source = batch.locate(id);
+            if (source == null) {
+                return false;
+            }
+            insertByPartition(batch, Collections.singletonList(item));
+            batch.edit(source).remove(Collections.singleton(id));
+            batch.refreshAfterCommit(source);
+            return true;
+        });
+    }
+
+    public boolean delete(String id) {
+        return shared.writer.submit(batch -> {
+            String partition = batch.locate(id);
+            if (partition == null) {
+                return false;
+            }
+            batch.edit(partition).remove(Collections.singleton(id));
+            batch.refreshAfterCommit(partition);
             return true;
+        });
+    }
+
+    public boolean deleteAll(List<String> ids) {
+        return shared.writer.submit(batch -> {
+            Set<String> remaining = new HashSet<>(ids);
+            boolean removed = false;
+            for (String partition : batch.partitions()) {
+                if (remaining.isEmpty()) {
+                    break;
+                }
+                List<String> present = new ArrayList<>();
+                for (String id : remaining) {
+                    if (batch.contains(partition, id)) {
+                        present.add(id);
+                    }
+                }
+                if (!present.isEmpty()) {
+                    removed = true;
+                    batch.edit(partition).remove(present);
+                    present.forEach(remaining::remove);
+                    batch.refreshAfterCommit(partition);
+                }
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Applies a batch drained by the {@link StoreWriter}: every operation runs against
+     * the batch's edits in arrival order, then each edited store is written once.
+     * An operation succeeds if it did and every store it edited was written.
+     *
+     * <p>The whole batch runs under the file's {@link StoreLock}. If another process
+     * wrote since our last batch, every cached store is re-checked first, so the
+     * edits start from what is on disk rather than overwriting the other writes.
+     */
+    void runBatch(List<StoreWriter.Pending<T>> pending) {
+        Set<String> failed;
+        try {
+            shared.lock.lock();
         } catch (IOException e) {
             e.printStackTrace();
-            return false;
+            return;
+        }
+        try {
+            if (shared.lock.changedElsewhere()) {
+                revalidateStores();
+            }
+            WriteBatch batch = new WriteBatch();
+            for (StoreWriter.Pending<T> write : pending) {
+                batch.current = write;
+                try {
+                    write.applied = write.operation.apply(batch);
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            failed = batch.commit();
+            if (failed.size() < batch.edits.size()) {
+                shared.lock.written();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            shared.lock.unlock();
+        }
+        for (StoreWriter.Pending<T> write : pending) {
+            boolean succeeded = write.applied && Collections.disjoint(write.partitions, failed);
+            if (succeeded) {
+                shared.changes.incrementAndGet();
+            }
+            write.result.complete(succeeded);
         }
     }
 
-    public boolean saveAll(List<T> items) {
-        List<T> allItems = getAll();
-        allItems.addAll(items);
+    StoreLock storeLock() {
+        return shared.lock;
+    }
+
+    private void revalidateStores() throws IOException {
+        List<CsvStore<T>> loaded;
+        synchronized (shared) {
+            loaded = new ArrayList<>(shared.stores.values());
+        }
+        for (CsvStore<T> store : loaded) {
+            store.revalidate();
+        }
+    }
+
+    /**
+     * Writes being applied together. Each partition gets one {@link CsvStore.Edit}, so
+     * later operations in the batch see what earlier ones did before anything is
+     * written; {@link #commit} then writes every edited store once.
+     */
+    final class WriteBatch {
+        private final Map<String, CsvStore<T>.Edit> edits = new LinkedHashMap<>();
+        private final Set<String> refresh = new LinkedHashSet<>();
+        private StoreWriter.Pending<T> current;
+
+        CsvStore<T>.Edit edit(String partition) throws IOException {
+            if (current != null) {
+                current.partitions.add(partition);
+            }
+            CsvStore<T>.Edit edit = edits.get(partition);
+            if (edit == null) {
+                edit = storeFor(partition).edit();
+                edits.put(partition, edit);
+            }
+            return edit;
+        }
+
+        boolean contains(String partition, String id) throws IOException {
+            CsvStore<T>.Edit edit = edits.get(partition);
+            return edit != null ? edit.contains(id) : storeFor(partition).contains(id);
+        }
+
+        /**
+         * Every partition, including ones this batch creates, in {@link #searchOrder}.
+         */
+        List<String> partitions() throws IOException {
+            Set<String> partitions = new LinkedHashSet<>(searchOrder());
+            partitions.addAll(edits.keySet());
+            return new ArrayList<>(partitions);
+        }
+
+        String locate(String id) throws IOException {
+            for (String partition : partitions()) {
+                if (contains(partition, id)) {
+                    return partition;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Narrows the partition's manifest entry once the batch is written.
+         */
+        void refreshAfterCommit(String partition) {
+            refresh.add(partition);
+        }
+
+        /**
+         * Writes every edited store and returns the partitions that failed.
+         */
+        Set<String> commit() {
+            Set<String> failed = new HashSet<>();
+            List<ChangeListener.Change<T>> committed = shared.listeners.isEmpty() ? null : new ArrayList<>();
+            synchronized (shared.commitLock) {
+                for (Map.Entry<String, CsvStore<T>.Edit> entry : edits.entrySet()) {
+                    try {
+                        storeFor(entry.getKey()).commit(entry.getValue());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        failed.add(entry.getKey());
+                        continue;
+                    }
+                    entry.getValue().forEachChange((before, after) -> {
+                        try {
+                            changed(before, after);
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                        }
+                        if (committed != null) {
+                            committed.add(new ChangeListener.Change<>(before != null ? copy(before) : null,
+                                    after != null ? copy(after) : null));
+                        }
+                    });
+                }
+                if (committed != null && !committed.isEmpty()) {
+                    List<ChangeListener.Change<T>> changes = Collections.unmodifiableList(committed);
+                    for (ChangeListener<T> listener : shared.listeners) {
+                        try {
+                            listener.changed(changes);
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+            for (String partition : refresh) {
+                try {
+                    refreshSegment(partition);
+                } catch (IOException e) {
+                    // The manifest stays wider than the data, which only costs extra reads.
+                    e.printStackTrace();
+                }
+            }
+            return failed;
+        }
+    }
+
+    public List<T> findBy(Predicate<T> predicate) {
+        List<T> result = new ArrayList<>();
         try {
-            writeAllRecords(allItems);
-            return true;
+            for (String partition : allPartitions()) {
+                result.addAll(select(storeFor(partition), predicate));
+            }
         } catch (IOException e) {
             e.printStackTrace();
-            return false;
         }
+        return result;
     }
 
-    public boolean update(T item) {
-        List<T> items = getAll();
-        for (int i = 0; i < items.size(); i++) {
-            if (getId(items.get(i)).equals(getId(item))) {
-                items.set(i, item);
+    public long count() {
+        long count = 0;
+        try {
+            for (String partition : allPartitions()) {
+                count += storeFor(partition).size();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return count;
+    }
+
+    /**
+     * Iterator that opens one partition's cursor at a time.
+     */
+    private final class PartitionChain implements Iterator<T>, Closeable {
+        private final Iterator<String> partitions;
+        private Cursor<T> current = Cursor.of(Collections.emptyIterator());
+
+        private PartitionChain(Iterator<String> partitions) {
+            this.partitions = partitions;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (!partitions.hasNext()) {
+                    return false;
+                }
                 try {
-                    writeAllRecords(items);
-                    return true;
+                    current = storeFor(partitions.next()).cursor();
                 } catch (IOException e) {
                     e.printStackTrace();
-                    return false;
                 }
             }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            current.close();
         }
-        return false;
     }
 
-    public boolean delete(String id) {
-        List<T> items = getAll();
-        boolean removed = items.removeIf(item -> getId(item).equals(id));
-        if (removed) {
-            try {
-                // Create a backup file in case the write fails
-                File originalFile = new File(csvFilePath);
-                File backupFile = new File(csvFilePath + ".bak");
-                if (originalFile.exists()) {
-                    Files.copy(originalFile.toPath(), backupFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    private List<T> select(CsvStore<T> store, Predicate<T> predicate) throws IOException {
+        return select(store, predicate, Integer.MAX_VALUE);
+    }
+
+    private List<T> select(CsvStore<T> store, Predicate<T> predicate, int limit) throws IOException {
+        if (predicate instanceof IndexedPredicate<T> indexedPredicate) {
+            return store.selectIndexed(indexedPredicate, limit);
+        }
+        return store.select(predicate, limit);
+    }
+
+    private String partitionKey(T item) {
+        return partitionDirectory == null ? "" : String.valueOf(partitionOf(item));
+    }
+
+    private void insertByPartition(WriteBatch batch, List<T> items) throws IOException {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(partitionKey(item), k -> new ArrayList<>()).add(item);
+        }
+        for (Map.Entry<String, List<T>> group : groups.entrySet()) {
+            widenSegment(group.getKey(), group.getValue());
+            batch.edit(group.getKey()).insert(group.getValue());
+        }
+    }
+
+    /**
+     * Inserts outside the writer, one write per partition. Only {@link #migrate} uses it;
+     * it holds the commit lock, so no queued write can start meanwhile.
+     */
+    private void insertDirectly(List<T> items) throws IOException {
+        WriteBatch batch = new WriteBatch();
+        insertByPartition(batch, items);
+        if (!batch.commit().isEmpty()) {
+            throw new IOException("Could not write records moved by migration");
+        }
+    }
+
+    /**
+     * Records the items' range keys in the group manifest before they are written,
+     * so the manifest never claims less than the segment holds.
+     */
+    private void widenSegment(String partition, List<T> items) throws IOException {
+        int slash = partition.lastIndexOf('/');
+        if (slash < 0) {
+            return;
+        }
+        String first = null;
+        String last = null;
+        for (T item : items) {
+            String key = rangeKeyOf(item);
+            if (key == null) {
+                first = "";
+                last = "\uffff";
+                break;
+            }
+            first = first == null || key.compareTo(first) < 0 ? key : first;
+            last = last == null || key.compareTo(last) > 0 ? key : last;
+        }
+        manifestFor(partition.substring(0, slash)).widen(partition.substring(slash + 1), first, last);
+    }
+
+    /**
+     * Narrows the segment's manifest entry to what it holds after a removal.
+     */
+    private void refreshSegment(String partition) throws IOException {
+        int slash = partition.lastIndexOf('/');
+        if (slash < 0) {
+            return;
+        }
+        String[] range = storeFor(partition).range(this::rangeKeyOf);
+        manifestFor(partition.substring(0, slash)).set(partition.substring(slash + 1), range);
+    }
+
+    /**
+     * Manifest of a partition group, rebuilt from the segment files if it is missing.
+     */
+    private SegmentManifest manifestFor(String group) throws IOException {
+        awaitWrites();
+        ensureMigrated();
+        synchronized (shared) {
+            SegmentManifest manifest = shared.manifests.get(group);
+            if (manifest != null) {
+                return manifest;
+            }
+            Path directory = partitionDirectory.resolve(encodePartition(group));
+            manifest = new SegmentManifest(this, directory);
+            if (!manifest.exists() && Files.isDirectory(directory)) {
+                for (String partition : listPartitions(directory, snapshotSuffix())) {
+                    String[] range = storeFor(group + "/" + partition).range(this::rangeKeyOf);
+                    manifest.set(partition, range);
+                }
+            }
+            shared.manifests.put(group, manifest);
+            return manifest;
+        }
+    }
+
+    private CsvStore<T> storeFor(String partition) throws IOException {
+        awaitWrites();
+        ensureMigrated();
+        synchronized (shared) {
+            if (partitionDirectory == null) {
+                partition = "";
+            }
+            CsvStore<T> store = shared.stores.get(partition);
+            if (store == null) {
+                Path path = partitionDirectory == null
+                        ? Paths.get(csvFilePath)
+                        : partitionDirectory.resolve(encodePartition(partition) + snapshotSuffix());
+                store = new CsvStore<>(this, path, journaled);
+                for (SecondaryIndex<T> index : shared.indexes.values()) {
+                    store.addIndex(index.newEmpty());
                 }
+                for (RangeIndex<T> index : shared.ranges.values()) {
+                    store.addRangeIndex(index);
+                }
+                if (!store.isWatched()) {
+                    shared.unwatched = true;
+                }
+                shared.stores.put(partition, store);
+            }
+            return store;
+        }
+    }
 
-                // Write the new data
-                writeAllRecords(items);
+    /**
+     * Applies queued write-behind writes before a read, so readers see them. Skipped
+     * while the shared state or the commit lock is held: the outermost call has
+     * already waited, and the writer needs those locks to finish.
+     */
+    private void awaitWrites() {
+        if (!Thread.holdsLock(shared) && !Thread.holdsLock(shared.commitLock)) {
+            shared.writer.flush();
+        }
+    }
 
-                // Delete the backup if successful
-                backupFile.delete();
-                return true;
-            } catch (IOException e) {
-                e.printStackTrace();
-                // Restore from backup if possible
-                try {
-                    File originalFile = new File(csvFilePath);
-                    File backupFile = new File(csvFilePath + ".bak");
-                    if (backupFile.exists()) {
-                        Files.copy(backupFile.toPath(), originalFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                        backupFile.delete();
+    /**
+     * Every partition key of this DAO. For a partitioned DAO this walks the partition
+     * directory, so it touches every partition's file; per-partition queries should go
+     * through {@link #findInPartition} or {@link #segmentsOf} instead.
+     */
+    private List<String> allPartitions() throws IOException {
+        if (partitionDirectory == null) {
+            return Collections.singletonList("");
+        }
+        awaitWrites();
+        ensureMigrated();
+        return listPartitions(partitionDirectory, snapshotSuffix());
+    }
+
+    private List<String> listPartitions(Path directory, String suffix) throws IOException {
+        Set<String> partitions = new TreeSet<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                String name = directory.relativize(file).toString();
+                if (attributes.isRegularFile() && (name.endsWith(suffix) || name.endsWith(suffix + ".journal")
+                        || name.endsWith(suffix + ".journal.compacting"))) {
+                    String key = partitionDirectory.relativize(file).toString();
+                    key = key.substring(0, key.lastIndexOf(suffix)).replace(File.separatorChar, '/');
+                    if (isPartitionKey(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                        name = name.substring(0, name.lastIndexOf(suffix)).replace(File.separatorChar, '/');
+                        partitions.add(URLDecoder.decode(name, StandardCharsets.UTF_8));
                     }
-                } catch (IOException ex) {
-                    ex.printStackTrace();
                 }
+                return FileVisitResult.CONTINUE;
             }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                // Compaction renames journals while we walk: skip a file that is gone
+                // by the time it is visited instead of failing the whole listing.
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return new ArrayList<>(partitions);
+    }
+
+    /**
+     * Partitions whose data is already in memory come first, so id lookups for the user
+     * being worked on rarely have to open other partitions.
+     */
+    private List<String> searchOrder() throws IOException {
+        List<String> loaded = new ArrayList<>();
+        List<String> rest = new ArrayList<>();
+        for (String partition : allPartitions()) {
+            (storeFor(partition).isLoaded() ? loaded : rest).add(partition);
         }
-        return false;
+        loaded.addAll(rest);
+        return loaded;
     }
 
-    public boolean deleteAll(List<String> ids) {
-        List<T> items = getAll();
-        boolean removed = items.removeIf(item -> ids.contains(getId(item)));
-        if (removed) {
-            try {
-                writeAllRecords(items);
-                return true;
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * Runs {@link #migrate} once, before the caller takes the shared monitor. Migration
+     * commits the records it moves, so it takes the commit lock first and the shared
+     * monitor second, in the same order as every other commit.
+     */
+    private void ensureMigrated() throws IOException {
+        if (partitionDirectory == null || shared.migrated) {
+            return;
+        }
+        synchronized (shared.commitLock) {
+            synchronized (shared) {
+                migrate();
             }
         }
-        return false;
     }
 
-    public List<T> findBy(Predicate<T> predicate) {
-        return getAll().stream()
-                .filter(predicate)
-                .collect(java.util.stream.Collectors.toList());
+    /**
+     * Brings the partition directory up to the current {@link #partitionLayout}: splits a
+     * pre-partitioning single file (kept afterwards, journal folded in, as
+     * {@code <csvFilePath>.migrated}), re-encodes CSV partitions into the
+     * {@link #snapshotSuffix snapshot format} and re-homes files written under an older layout.
+     * Safe to rerun after a crash: records already copied are simply written again with
+     * the same values, and the layout marker is only updated at the end.
+     */
+    private void migrate() throws IOException {
+        // Only reached through ensureMigrated, with both locks held.
+        if (shared.migrated) {
+            return;
+        }
+        shared.migrated = true;
+        synchronized (BaseDao.class) {
+            Path marker = partitionDirectory.resolve(LAYOUT_FILE);
+            String layout = Files.exists(marker) ? Files.readString(marker, StandardCharsets.UTF_8).trim() : null;
+            if (!partitionLayout().equals(layout)) {
+                if (!".csv".equals(snapshotSuffix())) {
+                    // Partitions written as CSV before the DAO switched to a binary snapshot.
+                    for (String partition : listPartitions(partitionDirectory, ".csv")) {
+                        CsvStore<T> old = new CsvStore<>(this,
+                                partitionDirectory.resolve(encodePartition(partition) + ".csv"), journaled);
+                        insertDirectly(old.select(null));
+                        old.drop();
+                    }
+                }
+                for (String partition : listPartitions(partitionDirectory, snapshotSuffix())) {
+                    CsvStore<T> store = storeFor(partition);
+                    List<T> misplaced = store.select(item -> !partitionKey(item).equals(partition));
+                    if (misplaced.isEmpty()) {
+                        continue;
+                    }
+                    insertDirectly(misplaced);
+                    if (misplaced.size() == store.size()) {
+                        store.drop();
+                        shared.stores.remove(partition);
+                    } else {
+                        List<String> ids = new ArrayList<>();
+                        misplaced.forEach(item -> ids.add(getId(item)));
+                        store.remove(ids);
+                    }
+                }
+            }
+
+            Path legacy = Paths.get(csvFilePath);
+            CsvStore<T> legacyStore = new CsvStore<>(this, legacy, journaled);
+            if (Files.exists(legacy) || Files.exists(Paths.get(csvFilePath + ".journal"))
+                    || Files.exists(Paths.get(csvFilePath + ".journal.compacting"))) {
+                List<T> all = legacyStore.select(null);
+                insertDirectly(all);
+                writeAllRecords(Paths.get(csvFilePath + ".migrated"), all);
+                legacyStore.drop();
+            }
+
+            if (!partitionLayout().equals(layout)) {
+                Path temp = Paths.get(marker + ".tmp");
+                Files.writeString(temp, partitionLayout(), StandardCharsets.UTF_8);
+                shared.fsyncPolicy.publish(temp, marker);
+            }
+        }
     }
 
-    public long count() {
-        return getAll().size();
+    /**
+     * Encodes each {@code /}-separated part of a key as a file name: letters, digits,
+     * {@code -} and {@code _} are kept, every other byte becomes {@code %XX}.
+     */
+    private static String encodePartition(String partition) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : partition.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '/') {
+                name.append(c);
+            } else {
+                name.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return name.toString();
     }
 }
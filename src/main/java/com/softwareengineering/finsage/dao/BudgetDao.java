@@ -1,8 +1,6 @@
 package com.softwareengineering.finsage.dao;
 
 import com.softwareengineering.finsage.model.Budget;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -18,12 +16,17 @@ public class BudgetDao extends BaseDao<Budget> {
     private static final String CSV_FILE = "data/budgets.csv";
     private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
 
+    private static final String BY_USER = "userId";
+    private static final String BY_USER_MONTH = "userId+month";
+
     public BudgetDao() {
         super(CSV_FILE, HEADERS);
+        addIndex(BY_USER, Budget::getUserId);
+        addIndex(BY_USER_MONTH, Budget::getUserId, Budget::getMonth);
     }
 
     @Override
-    protected void printRecord(CSVPrinter printer, Budget budget) throws IOException {
+    protected void printRecord(CsvWriter printer, Budget budget) throws IOException {
         printer.printRecord(
                 budget.getId(),
                 budget.getMonth().format(MONTH_FORMATTER),
@@ -34,7 +37,7 @@ public class BudgetDao extends BaseDao<Budget> {
     }
 
     @Override
-    protected Budget parseRecord(CSVRecord record) {
+    protected Budget parseRecord(CsvRow record) {
         Budget budget = new Budget();
         budget.setId(record.get("id"));
         budget.setMonth(YearMonth.parse(record.get("month"), MONTH_FORMATTER));
@@ -50,29 +53,27 @@ public class BudgetDao extends BaseDao<Budget> {
         return budget.getId();
     }
 
+    @Override
+    protected Budget copy(Budget budget) {
+        return new Budget(budget.getId(), budget.getMonth(), budget.getCategoryId(), budget.getAmount(), budget.getUserId());
+    }
+
     public List<Budget> getByUserId(String userId) {
-        return findBy(b -> b.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId));
     }
 
     public List<Budget> getByMonthAndUserId(YearMonth month, String userId) {
-        return findBy(b -> b.getMonth().equals(month) && b.getUserId().equals(userId));
+        return findBy(indexed(BY_USER_MONTH, userId, month));
     }
 
     public Optional<Budget> getTotalBudgetByMonthAndUserId(YearMonth month, String userId) {
-        return findBy(b -> b.getMonth().equals(month) &&
-                b.getUserId().equals(userId) &&
-                b.isTotalBudget())
-                .stream()
-                .findFirst();
+        return findFirst(indexed(BY_USER_MONTH, userId, month).and(Budget::isTotalBudget));
     }
 
     public Optional<Budget> getCategoryBudgetByMonthAndUserId(YearMonth month, String categoryId, String userId) {
-        return findBy(b -> b.getMonth().equals(month) &&
+        return findFirst(indexed(BY_USER_MONTH, userId, month).and(b ->
                 b.getCategoryId() != null &&
-                b.getCategoryId().equals(categoryId) &&
-                b.getUserId().equals(userId))
-                .stream()
-                .findFirst();
+                b.getCategoryId().equals(categoryId)));
     }
 
     public boolean saveOrUpdateBudget(Budget budget) {
@@ -1,8 +1,6 @@
 package com.softwareengineering.finsage.dao;
 
 import com.softwareengineering.finsage.model.Category;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.util.List;
@@ -13,12 +11,17 @@ public class CategoryDao extends BaseDao<Category> {
     private static final String[] HEADERS = {"id", "name", "userId"};
     private static final String CSV_FILE = "data/categories.csv";
 
+    private static final String BY_USER = "userId";
+    private static final String BY_USER_NAME = "userId+name";
+
     public CategoryDao() {
         super(CSV_FILE, HEADERS);
+        addIndex(BY_USER, Category::getUserId);
+        addIndex(BY_USER_NAME, Category::getUserId, ignoreCase(Category::getName));
     }
 
     @Override
-    protected void printRecord(CSVPrinter printer, Category category) throws IOException {
+    protected void printRecord(CsvWriter printer, Category category) throws IOException {
         printer.printRecord(
                 category.getId(),
                 category.getName(),
@@ -27,7 +30,7 @@ public class CategoryDao extends BaseDao<Category> {
     }
 
     @Override
-    protected Category parseRecord(CSVRecord record) {
+    protected Category parseRecord(CsvRow record) {
         Category category = new Category();
         category.setId(record.get("id"));
         category.setName(record.get("name"));
@@ -40,14 +43,17 @@ public class CategoryDao extends BaseDao<Category> {
         return category.getId();
     }
 
+    @Override
+    protected Category copy(Category category) {
+        return new Category(category.getId(), category.getName(), category.getUserId());
+    }
+
     public List<Category> getByUserId(String userId) {
-        return findBy(c -> c.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId));
     }
 
     public Optional<Category> getByNameAndUserId(String name, String userId) {
-        return getAll().stream()
-                .filter(c -> c.getName().equalsIgnoreCase(name) && c.getUserId().equals(userId))
-                .findFirst();
+        return findFirst(indexed(BY_USER_NAME, userId, name));
     }
 
     public boolean existsByNameAndUserId(String name, String userId) {
@@ -55,7 +61,7 @@ public class CategoryDao extends BaseDao<Category> {
     }
 
     public List<Category> searchByName(String name, String userId) {
-        return findBy(c -> c.getName().toLowerCase().contains(name.toLowerCase()) && c.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId).and(c -> c.getName().toLowerCase().contains(name.toLowerCase())));
     }
 
     public long countByUserId(String userId) {
@@ -63,9 +69,7 @@ public class CategoryDao extends BaseDao<Category> {
     }
 
     public Optional<Category> findById(String id) {
-        return getAll().stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(getById(id));
     }
 
 }
@@ -0,0 +1,31 @@
+package com.softwareengineering.finsage.dao;
+
+import java.util.List;
+
+/**
+ * Receives the records a DAO's writes change, registered with
+ * {@link BaseDao#addChangeListener}. Listeners run on the DAO's writer thread while no
+ * other write can commit, so they must be quick and must not write to the same DAO;
+ * reading it is fine, and what they read already includes the changes passed in.
+ */
+@FunctionalInterface
+public interface ChangeListener<T> {
+    /**
+     * One changed record: {@code before} is null for an insert, {@code after} null for a
+     * delete. Both are copies the listener may keep.
+     */
+    record Change<T>(T before, T after) {}
+
+    /**
+     * Called once per written batch, after every record of it is committed.
+     */
+    void changed(List<Change<T>> changes);
+
+    /**
+     * Called when records changed without passing through {@link #changed}, such as
+     * another process writing the files; anything derived from earlier changes should be
+     * recomputed.
+     */
+    default void reloaded() {
+    }
+}
@@ -0,0 +1,210 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Minimal RFC 4180 reader for the DAO files. The first row is the header; every later
+ * row is exposed through one reused {@link CsvRow}, whose fields are only turned into
+ * strings when asked for. Fields are trimmed unless quoted, blank lines are skipped,
+ * and short values (ids, dates, amounts) are shared between rows through a small
+ * intern table, so a column of repeated user or category ids costs one string.
+ */
+final class CsvReader implements Closeable {
+    private static final int INTERN_SLOTS = 4096;
+    private static final int MAX_INTERNED_LENGTH = 64;
+
+    private final Reader in;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+
+    private char[] chars = new char[256];
+    private int length;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+    private boolean terminated;
+
+    private final String[] interned = new String[INTERN_SLOTS];
+    private final CsvRow row;
+
+    CsvReader(Reader in) throws IOException {
+        this.in = in;
+        String[] header = new String[0];
+        if (next()) {
+            header = new String[count];
+            for (int i = 0; i < count; i++) {
+                // Interned so lookups with the DAOs' string literals match by identity.
+                header[i] = new String(chars, starts[i], ends[i] - starts[i]).intern();
+            }
+        }
+        this.row = new CsvRow(this, header);
+    }
+
+    static CsvReader open(Path path) throws IOException {
+        return new CsvReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
+
+    CsvRow row() {
+        return row;
+    }
+
+    /**
+     * Advances to the next non-blank row; false at end of input.
+     */
+    boolean next() throws IOException {
+        for (;;) {
+            count = 0;
+            length = 0;
+            int c = read();
+            if (c == -1) {
+                return false;
+            }
+            if (c == '\r' || c == '\n') {
+                continue;
+            }
+            position--;
+            for (;;) {
+                int start = length;
+                c = read();
+                while (c == ' ' || c == '\t') {
+                    c = read();
+                }
+                if (c == '"') {
+                    for (;;) {
+                        c = read();
+                        if (c == -1) {
+                            break;
+                        }
+                        if (c == '"') {
+                            c = read();
+                            if (c != '"') {
+                                break;
+                            }
+                        }
+                        append((char) c);
+                    }
+                    int end = length;
+                    while (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                        c = read();
+                    }
+                    addField(start, end);
+                } else {
+                    while (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                        append((char) c);
+                        c = read();
+                    }
+                    int end = length;
+                    while (end > start && (chars[end - 1] == ' ' || chars[end - 1] == '\t')) {
+                        end--;
+                    }
+                    addField(start, end);
+                }
+                if (c != ',') {
+                    break;
+                }
+            }
+            terminated = c != -1;
+            if (c == '\r') {
+                c = read();
+                if (c == -1) {
+                    terminated = false;
+                } else if (c != '\n') {
+                    position--;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * True if the current row ended with a line break rather than at the end of input.
+     */
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    int size() {
+        return count;
+    }
+
+    String value(int column) {
+        int start = starts[column];
+        int length = ends[column] - start;
+        if (length == 0) {
+            return "";
+        }
+        if (length > MAX_INTERNED_LENGTH) {
+            return new String(chars, start, length);
+        }
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (INTERN_SLOTS - 1);
+        String cached = interned[slot];
+        if (cached != null && cached.length() == length && matches(cached, start)) {
+            return cached;
+        }
+        String value = new String(chars, start, length);
+        interned[slot] = value;
+        return value;
+    }
+
+    char charAt(int column, int index) {
+        return chars[starts[column] + index];
+    }
+
+    int length(int column) {
+        return ends[column] - starts[column];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean matches(String cached, int start) {
+        for (int i = 0; i < cached.length(); i++) {
+            if (cached.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, length * 2);
+        }
+        chars[length++] = c;
+    }
+
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+}
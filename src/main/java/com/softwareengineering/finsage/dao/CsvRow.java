@@ -0,0 +1,124 @@
+package com.softwareengineering.finsage.dao;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Current row of a {@link CsvReader}, handed to {@link BaseDao#parseRecord}. Columns
+ * are looked up by header name; the same instance is reused for every row, so it must
+ * not be kept after {@code parseRecord} returns.
+ */
+public final class CsvRow {
+    private final CsvReader reader;
+    private final String[] header;
+
+    CsvRow(CsvReader reader, String[] header) {
+        this.reader = reader;
+        this.header = header;
+    }
+
+    public boolean isMapped(String name) {
+        return column(name) >= 0;
+    }
+
+    public String get(String name) {
+        return reader.value(checkedColumn(name));
+    }
+
+    public String get(int column) {
+        if (column >= reader.size()) {
+            throw new IllegalArgumentException("Index " + column + " out of range, record has " + reader.size() + " values");
+        }
+        return reader.value(column);
+    }
+
+    /**
+     * Parses a plain decimal ({@code -12.50}) straight from the buffer; anything else
+     * falls back to {@code new BigDecimal(String)}.
+     */
+    public BigDecimal getDecimal(String name) {
+        int column = checkedColumn(name);
+        int length = reader.length(column);
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (reader.charAt(column, 0) == '-' || reader.charAt(column, 0) == '+')) {
+            negative = reader.charAt(column, 0) == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < length; i++) {
+            char c = reader.charAt(column, i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9' && digits < 18) {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return new BigDecimal(reader.value(column));
+            }
+        }
+        if (digits == 0) {
+            return new BigDecimal(reader.value(column));
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /**
+     * Parses an ISO {@code yyyy-MM-dd} date straight from the buffer.
+     */
+    public LocalDate getLocalDate(String name) {
+        int column = checkedColumn(name);
+        if (reader.length(column) == 10 && reader.charAt(column, 4) == '-' && reader.charAt(column, 7) == '-') {
+            int year = digits(column, 0, 4);
+            int month = digits(column, 5, 2);
+            int day = digits(column, 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(reader.value(column));
+    }
+
+    private int digits(int column, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = reader.charAt(column, i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private int checkedColumn(String name) {
+        int column = column(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("Mapping for " + name + " not found, expected one of " + String.join(", ", header));
+        }
+        if (column >= reader.size()) {
+            throw new IllegalArgumentException("Index for header '" + name + "' is " + column
+                    + " but record has only " + reader.size() + " values");
+        }
+        return column;
+    }
+
+    private int column(String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i] == name) {
+                return i;
+            }
+        }
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,927 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Parsed, id-keyed copy of one CSV file (a whole DAO, or one partition of it).
+ * The file is parsed on first use into an immutable {@link State}; writes collect
+ * their changes in an {@link Edit} and, once the file is written, publish the next
+ * state ({@link RecordMap#with}) with a single atomic swap. Readers therefore never take a lock: they use
+ * whichever state was published last, and only re-parse when the file's size or
+ * modification time no longer matches that state and no write of ours is under way.
+ * Callers always get copies, so editing a returned object never touches the cache.
+ *
+ * <p>Where the {@link DataWatcher} can watch the directory, the files are only
+ * re-checked after it reported an event for them, so an idle store costs readers
+ * no I/O at all. When another process appended to the journal, only the appended
+ * entries are replayed.
+ *
+ * <p>In journal mode the CSV file is a snapshot and every insert, update and delete
+ * is appended to {@code <file>.journal} as a numbered entry instead of rewriting the
+ * snapshot. Loading replays the journal over the snapshot. Once the journal grows
+ * past {@link #COMPACT_MIN_BYTES} (or half the snapshot, whichever is larger) a
+ * background task folds it into a fresh snapshot.
+ *
+ * <p>The snapshot is CSV unless the file name says otherwise, in which case the DAO's
+ * binary snapshot format is used; the journal is always CSV.
+ *
+ * <p>Snapshots are never rewritten in place: a new one is written beside the old and
+ * moved over it, and the DAO's {@link FsyncPolicy} decides what is forced to disk.
+ *
+ * <p>Secondary and range indexes registered through {@link #addIndex} and
+ * {@link #addRangeIndex} are rebuilt on every load and kept by the {@link RecordMap},
+ * so each state's indexes describe its records.
+ */
+class CsvStore<T> {
+    static final long COMPACT_MIN_BYTES = 1024 * 1024;
+    static final long QUIET_MILLIS = 60 * 1000;
+
+    private static final String OP_INSERT = "I";
+    private static final String OP_UPDATE = "U";
+    private static final String OP_DELETE = "D";
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "csv-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BaseDao<T> dao;
+    private final Path path;
+    private final Path journal;
+    private final Path compacting;
+    private final boolean csv;
+    private final String[] journalHeaders;
+    private final Map<String, SecondaryIndex<T>> indexes = new LinkedHashMap<>();
+    private final Map<String, RangeIndex<T>> ranges = new LinkedHashMap<>();
+    private final AtomicReference<State<T>> state = new AtomicReference<>();
+    private final AtomicLong events = new AtomicLong();
+    private final boolean watched;
+    private volatile boolean writing;
+    private long sequence;
+    private boolean compactionQueued;
+    // Journal length up to which entries are known to be complete, and the file it was
+    // measured on
+    private long journalChecked;
+    private Object journalCheckedKey;
+
+    CsvStore(BaseDao<T> dao, Path path, boolean journaled) {
+        this.dao = dao;
+        this.path = path;
+        this.journal = journaled ? Paths.get(path + ".journal") : null;
+        this.compacting = journaled ? Paths.get(path + ".journal.compacting") : null;
+        this.csv = path.getFileName().toString().endsWith(".csv");
+        this.journalHeaders = new String[dao.headers.length + 2];
+        journalHeaders[0] = "seq";
+        journalHeaders[1] = "op";
+        System.arraycopy(dao.headers, 0, journalHeaders, 2, dao.headers.length);
+        this.watched = DataWatcher.watch(path, () -> {
+            events.incrementAndGet();
+            dao.fileEvent();
+        });
+    }
+
+    /**
+     * One published version of the store, the file stamp it corresponds to and the
+     * watcher event count at which that stamp was last confirmed.
+     */
+    private static final class State<T> {
+        final RecordMap<T> records;
+        final long[] stamp;
+        final long events;
+        // The journal read ended in a torn entry, which the next append cuts off: the
+        // journal's length then no longer marks where the entries read so far end.
+        final boolean tornTail;
+
+        State(RecordMap<T> records, long[] stamp, long events) {
+            this(records, stamp, events, false);
+        }
+
+        State(RecordMap<T> records, long[] stamp, long events, boolean tornTail) {
+            this.records = records;
+            this.stamp = stamp;
+            this.events = events;
+            this.tornTail = tornTail;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    boolean isWatched() {
+        return watched;
+    }
+
+    boolean isLoaded() {
+        return state.get() != null;
+    }
+
+    boolean hasPendingJournal() {
+        return journal != null && (Files.exists(journal) || Files.exists(compacting));
+    }
+
+    synchronized void addIndex(SecondaryIndex<T> index) {
+        indexes.put(index.getName(), index);
+        reindex();
+    }
+
+    synchronized void addRangeIndex(RangeIndex<T> index) {
+        ranges.put(index.getName(), index);
+        reindex();
+    }
+
+    private void reindex() {
+        State<T> current = state.get();
+        if (current != null) {
+            state.set(new State<>(current.records.reindex(indexes.values(), ranges.values()), current.stamp,
+                    current.events, current.tornTail));
+        }
+    }
+
+    T get(String id) throws IOException {
+        T item = current().records.get(id);
+        return item == null ? null : dao.copy(item);
+    }
+
+    boolean contains(String id) throws IOException {
+        return current().records.containsKey(id);
+    }
+
+    int size() throws IOException {
+        return current().records.size();
+    }
+
+    List<T> select(Predicate<T> predicate) throws IOException {
+        return select(predicate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The first {@code limit} matches in file order; the scan stops there.
+     */
+    List<T> select(Predicate<T> predicate, int limit) throws IOException {
+        List<T> result = new ArrayList<>();
+        for (T item : current().records) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (predicate == null || predicate.test(item)) {
+                result.add(dao.copy(item));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * First record matching the predicate, or null. If the records are not cached and
+     * the snapshot is complete, the file is read only up to the match and the cache is
+     * left cold; otherwise this is an index probe or an in-memory scan.
+     */
+    T first(Predicate<T> predicate) throws IOException {
+        if (state.get() == null && !hasPendingJournal()) {
+            try (Cursor<T> cursor = cursor()) {
+                while (cursor.hasNext()) {
+                    T item = cursor.next();
+                    if (predicate == null || predicate.test(item)) {
+                        return item;
+                    }
+                }
+            }
+            return null;
+        }
+        if (predicate instanceof IndexedPredicate<T> indexedPredicate) {
+            List<T> matches = selectIndexed(indexedPredicate);
+            return matches.isEmpty() ? null : matches.get(0);
+        }
+        for (T item : current().records) {
+            if (predicate == null || predicate.test(item)) {
+                return dao.copy(item);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Like {@link #get}, but a store that is not cached yet is scanned only up to the id.
+     */
+    T find(String id) throws IOException {
+        if (state.get() == null && !hasPendingJournal()) {
+            return first(item -> id.equals(dao.getId(item)));
+        }
+        return get(id);
+    }
+
+    /**
+     * Cursor over the records. A store that is not cached and has a complete snapshot is
+     * streamed straight from the file without filling the cache; otherwise the cursor
+     * walks the state published at this moment, unaffected by later writes.
+     */
+    Cursor<T> cursor() throws IOException {
+        if (state.get() == null && !hasPendingJournal()) {
+            if (!Files.exists(path)) {
+                return Cursor.of(Collections.emptyIterator());
+            }
+            return dao.openSnapshot(path, csv);
+        }
+        Iterator<T> records = current().records.iterator();
+        return Cursor.of(new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return dao.copy(records.next());
+            }
+        });
+    }
+
+    /**
+     * Returns copies of the records whose index key matches, filtered by the residual
+     * predicate if there is one. Costs one hash probe plus the size of the match set.
+     */
+    List<T> selectIndexed(IndexedPredicate<T> predicate) throws IOException {
+        return selectIndexed(predicate, Integer.MAX_VALUE);
+    }
+
+    List<T> selectIndexed(IndexedPredicate<T> predicate, int limit) throws IOException {
+        State<T> current = current();
+        Predicate<T> residual = predicate.getResidual();
+        List<T> result = new ArrayList<>();
+        for (String id : current.records.ids(predicate.getIndex().getName(), predicate.getKey())) {
+            if (result.size() >= limit) {
+                break;
+            }
+            T item = current.records.get(id);
+            if (item != null && (residual == null || residual.test(item))) {
+                result.add(dao.copy(item));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies of the records whose key in range index {@code name} is in [from, to], in
+     * key order, filtered by {@code residual} if not null; at most {@code limit}.
+     */
+    List<T> selectRange(String name, long from, long to, Predicate<T> residual, int limit) throws IOException {
+        List<T> result = new ArrayList<>();
+        for (T item : current().records.range(name, from, to)) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (residual == null || residual.test(item)) {
+                result.add(dao.copy(item));
+            }
+        }
+        return result;
+    }
+
+    int estimateRange(String name, long from, long to) throws IOException {
+        return current().records.estimateRange(name, from, to);
+    }
+
+    /**
+     * At least as many records as an index probe for {@code key} would return, from the
+     * index alone. Lets a query planner compare access paths before running one.
+     */
+    int estimate(String index, String key) throws IOException {
+        return current().records.estimate(index, key);
+    }
+
+    /**
+     * Starts a change against the current state. Only one edit per store may be in
+     * flight; the DAO's writer guarantees that.
+     */
+    Edit edit() throws IOException {
+        return new Edit(current());
+    }
+
+    /**
+     * Pending changes on top of the state the edit began from: id to new record, or
+     * to null for a removal. Readers keep seeing that state until {@link #commit}.
+     */
+    final class Edit {
+        private final State<T> base;
+        private final LinkedHashMap<String, T> changes = new LinkedHashMap<>();
+        private final List<Object[]> entries = new ArrayList<>();
+
+        private Edit(State<T> base) {
+            this.base = base;
+        }
+
+        boolean contains(String id) {
+            return changes.containsKey(id) ? changes.get(id) != null : base.records.containsKey(id);
+        }
+
+        void insert(List<T> items) {
+            for (T item : items) {
+                T stored = dao.copy(item);
+                changes.put(dao.getId(stored), stored);
+                entries.add(new Object[]{OP_INSERT, stored});
+            }
+        }
+
+        boolean replace(T item) {
+            if (!contains(dao.getId(item))) {
+                return false;
+            }
+            T stored = dao.copy(item);
+            changes.put(dao.getId(stored), stored);
+            entries.add(new Object[]{OP_UPDATE, stored});
+            return true;
+        }
+
+        /**
+         * Passes each change as (record before, record after); null stands for absent.
+         */
+        void forEachChange(BiConsumer<T, T> action) {
+            changes.forEach((id, item) -> action.accept(base.records.get(id), item));
+        }
+
+        /**
+         * Removes whichever of the ids the store holds and returns those ids.
+         */
+        List<String> remove(Collection<String> ids) {
+            List<String> present = new ArrayList<>();
+            for (String id : ids) {
+                if (contains(id)) {
+                    present.add(id);
+                }
+            }
+            if (present.isEmpty()) {
+                return present;
+            }
+            for (String id : present) {
+                changes.put(id, null);
+                entries.add(new Object[]{OP_DELETE, id});
+            }
+            return present;
+        }
+    }
+
+    /**
+     * Writes the edit (one journal append, or one snapshot rewrite) and publishes it.
+     * Fails without publishing if the file was changed by someone else since the edit
+     * began; the next access then re-reads it.
+     */
+    synchronized void commit(Edit edit) throws IOException {
+        if (edit.entries.isEmpty()) {
+            return;
+        }
+        State<T> current = state.get();
+        if (current == null || current.records != edit.base.records) {
+            throw new IOException(path + " changed on disk while it was being edited");
+        }
+        RecordMap<T> records = current.records.with(edit.changes);
+        long seen = events.get();
+        writing = true;
+        try {
+            if (journal != null) {
+                appendJournal(edit.entries);
+            } else {
+                List<T> all = new ArrayList<>(records.size());
+                records.forEach(all::add);
+                dao.writeSnapshot(path, all, csv);
+            }
+            state.set(new State<>(records, stamp(), seen));
+        } catch (IOException e) {
+            // Part of the edit may have reached the file; re-read it on next access.
+            invalidate();
+            throw e;
+        } finally {
+            writing = false;
+        }
+        if (journal != null) {
+            maybeCompact();
+        }
+    }
+
+    /**
+     * Inserts outside the DAO's writer (migration), so {@link BaseDao#changed} is not
+     * told; counts as a reload instead.
+     */
+    void insert(List<T> items) throws IOException {
+        Edit edit = edit();
+        edit.insert(items);
+        commit(edit);
+        dao.reloaded();
+    }
+
+    List<String> remove(Collection<String> ids) throws IOException {
+        Edit edit = edit();
+        List<String> removed = edit.remove(ids);
+        commit(edit);
+        dao.reloaded();
+        return removed;
+    }
+
+    /**
+     * Smallest and largest key over the stored records, or null when the store is empty.
+     * A record without a key makes the range unbounded.
+     */
+    String[] range(Function<T, String> key) throws IOException {
+        String first = null;
+        String last = null;
+        for (T item : current().records) {
+            String value = key.apply(item);
+            if (value == null) {
+                return new String[]{"", "\uffff"};
+            }
+            if (first == null || value.compareTo(first) < 0) {
+                first = value;
+            }
+            if (last == null || value.compareTo(last) > 0) {
+                last = value;
+            }
+        }
+        return first == null ? null : new String[]{first, last};
+    }
+
+    /**
+     * Deletes the snapshot and both journals. Used once every record has moved elsewhere.
+     */
+    synchronized void drop() throws IOException {
+        Files.deleteIfExists(path);
+        if (journal != null) {
+            Files.deleteIfExists(compacting);
+            Files.deleteIfExists(journal);
+        }
+        invalidate();
+    }
+
+    /**
+     * Forgets the parsed copy so the next access re-reads the file.
+     */
+    void invalidate() {
+        state.set(null);
+        dao.reloaded();
+    }
+
+    /**
+     * The published state, re-read first if the files changed behind our back. While
+     * one of our own writes is in progress the files are expected to be ahead of the
+     * state, so readers keep the published state instead of waiting for the write.
+     */
+    private State<T> current() throws IOException {
+        State<T> current = state.get();
+        if (current == null) {
+            return load();
+        }
+        if (writing) {
+            return current;
+        }
+        long seen = events.get();
+        if (watched && current.events == seen) {
+            return current;
+        }
+        if (Arrays.equals(stamp(), current.stamp)) {
+            if (watched) {
+                state.compareAndSet(current, new State<>(current.records, current.stamp, seen, current.tornTail));
+            }
+            return current;
+        }
+        return load();
+    }
+
+    /**
+     * Re-checks the files even if no watcher event has arrived yet. The writer calls it
+     * after another process wrote, before editing.
+     */
+    void revalidate() throws IOException {
+        if (state.get() != null) {
+            load();
+        }
+    }
+
+    private synchronized State<T> load() throws IOException {
+        long seen = events.get();
+        long[] stamp = stamp();
+        State<T> current = state.get();
+        if (current != null && Arrays.equals(stamp, current.stamp)) {
+            // Unchanged, or another reader got here first.
+            State<T> confirmed = new State<>(current.records, current.stamp, seen, current.tornTail);
+            state.compareAndSet(current, confirmed);
+            return confirmed;
+        }
+        State<T> next;
+        if (current != null) {
+            dao.reloaded();
+        }
+        if (current != null && !current.tornTail && journalGrew(current.stamp, stamp)) {
+            // Another process appended: replay just its entries on top of what we have.
+            LinkedHashMap<String, T> changes = new LinkedHashMap<>();
+            boolean torn = replay(journal, current.stamp[2], changes, true);
+            next = new State<>(current.records.with(changes), stamp, seen, torn);
+        } else {
+            LinkedHashMap<String, T> loaded = new LinkedHashMap<>();
+            if (Files.exists(path)) {
+                List<String> duplicates = new ArrayList<>();
+                for (T item : dao.readSnapshot(path, csv)) {
+                    if (loaded.putIfAbsent(dao.getId(item), item) != null) {
+                        duplicates.add(dao.getId(item));
+                    }
+                }
+                if (!duplicates.isEmpty()) {
+                    // Only the first row of an id is kept, and the next rewrite drops the rest.
+                    System.err.println(path + " has " + duplicates.size() + " rows repeating an earlier id;"
+                            + " keeping the first row of each: " + duplicates);
+                }
+            }
+            boolean torn = false;
+            if (journal != null) {
+                sequence = 0;
+                // A compaction that failed or died leaves its journal behind until a
+                // retry folds it. Replaying it again is harmless: every id ends in its
+                // final state.
+                replay(compacting, 0, loaded, false);
+                torn = replay(journal, 0, loaded, false);
+                compactIfQuiet();
+            }
+            next = new State<>(RecordMap.of(loaded, indexes.values(), ranges.values()), stamp, seen, torn);
+        }
+        // Stamp taken before the read: if the files moved on meanwhile,
+        // the next access simply sees a mismatch and reloads again.
+        state.set(next);
+        return next;
+    }
+
+    /**
+     * True if, between the two stamps, the snapshot and the compacting journal stayed
+     * put and the live journal only got longer.
+     */
+    private boolean journalGrew(long[] before, long[] after) {
+        return journal != null && before[0] == after[0] && before[1] == after[1]
+                && before[4] == after[4] && before[5] == after[5]
+                && before[2] > 0 && after[2] > before[2];
+    }
+
+    /**
+     * Applies a journal's entries from byte {@code offset} on (0 for the whole file) to
+     * {@code target}. With {@code tombstones} a delete is recorded as a null value
+     * instead of removing the id, for use with {@link RecordMap#with}.
+     *
+     * <p>Every entry is written with its line break, so a last entry without one was cut
+     * short by a crash mid-append and never acknowledged: it is skipped and true is
+     * returned. An entry that cannot be read anywhere else means the journal is corrupt,
+     * and fails the replay rather than dropping it and everything after it.
+     */
+    private boolean replay(Path file, long offset, Map<String, T> target, boolean tombstones) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (CsvReader reader = offset == 0 ? CsvReader.open(file) : openTail(file, offset)) {
+            CsvRow record = reader.row();
+            int entry = 0;
+            while (reader.next()) {
+                entry++;
+                long seq;
+                String op;
+                T item = null;
+                try {
+                    seq = Long.parseLong(record.get("seq"));
+                    op = record.get("op");
+                    if (!OP_DELETE.equals(op)) {
+                        item = dao.parseRecord(record);
+                    }
+                } catch (RuntimeException e) {
+                    if (!reader.isTerminated()) {
+                        return true;
+                    }
+                    throw new IOException("Unreadable entry " + entry + " in " + file
+                            + (offset > 0 ? " after byte " + offset : ""), e);
+                }
+                if (!reader.isTerminated()) {
+                    // Readable, but possibly missing fields the crash cut off.
+                    return true;
+                }
+                if (item == null) {
+                    if (tombstones) {
+                        target.put(record.get("id"), null);
+                    } else {
+                        target.remove(record.get("id"));
+                    }
+                } else {
+                    target.put(dao.getId(item), item);
+                }
+                sequence = Math.max(sequence, seq);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cuts a torn entry left by a crash mid-append off the end of the journal, so the
+     * next entry starts on a line of its own instead of merging into it. Only the part
+     * written since this process last checked is scanned, unless the journal was
+     * replaced in between.
+     */
+    private void truncateTornTail() throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        Object key = Files.readAttributes(journal, BasicFileAttributes.class).fileKey();
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long from = key != null && key.equals(journalCheckedKey) && size >= journalChecked ? journalChecked : 0;
+            // End of the last line break outside quotes; the writer quotes every value
+            // holding a quote or line break, so quotes only ever open and close values.
+            long complete = from;
+            boolean quoted = false;
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            long position = from;
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == '\n' && !quoted) {
+                        complete = position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            if (complete < size) {
+                channel.truncate(complete);
+            }
+        }
+    }
+
+    /**
+     * Reader over the journal's entries from {@code offset}, behind the header row.
+     */
+    private CsvReader openTail(Path file, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        byte[] header = (String.join(",", journalHeaders) + "\r\n").getBytes(StandardCharsets.UTF_8);
+        InputStream entries = new SequenceInputStream(new ByteArrayInputStream(header), Channels.newInputStream(channel));
+        return new CsvReader(new InputStreamReader(entries, StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void appendJournal(List<Object[]> entries) throws IOException {
+        Files.createDirectories(journal.toAbsolutePath().getParent());
+        truncateTornTail();
+        try (CsvWriter printer = CsvWriter.append(journal, journalHeaders)) {
+            for (Object[] entry : entries) {
+                if (OP_DELETE.equals(entry[0])) {
+                    printer.printRecord(++sequence, entry[0], entry[1]);
+                } else {
+                    printer.print(++sequence);
+                    printer.print(entry[0]);
+                    dao.printRecord(printer, (T) entry[1]);
+                }
+            }
+            dao.getFsyncPolicy().appended(printer, journal);
+        }
+        journalChecked = Files.size(journal);
+        journalCheckedKey = Files.readAttributes(journal, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * A journal nobody has appended to for {@link #QUIET_MILLIS} is folded in when the
+     * store is next loaded, so segments that stopped changing end up as a bare snapshot.
+     * So is a compacting journal left behind by a compaction that failed or died.
+     */
+    private void compactIfQuiet() throws IOException {
+        if (compactionQueued) {
+            return;
+        }
+        boolean quiet = Files.exists(journal)
+                && System.currentTimeMillis() - Files.getLastModifiedTime(journal).toMillis() >= QUIET_MILLIS;
+        if (quiet || abandonedCompaction()) {
+            compactionQueued = true;
+            COMPACTOR.execute(this::compact);
+        }
+    }
+
+    private void maybeCompact() throws IOException {
+        if (compactionQueued) {
+            return;
+        }
+        long journalSize = Files.size(journal);
+        long snapshotSize = Files.exists(path) ? Files.size(path) : 0;
+        if (journalSize >= Math.max(COMPACT_MIN_BYTES, snapshotSize / 2) || abandonedCompaction()) {
+            compactionQueued = true;
+            COMPACTOR.execute(this::compact);
+        }
+    }
+
+    /**
+     * True if a compacting journal exists that no compaction has touched for
+     * {@link #QUIET_MILLIS}: its snapshot failed to be written, or the process writing it
+     * died. A compaction still running in another process renamed it more recently.
+     */
+    private boolean abandonedCompaction() throws IOException {
+        try {
+            return System.currentTimeMillis() - Files.getLastModifiedTime(compacting).toMillis() >= QUIET_MILLIS;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Folds the journal into a new snapshot. The live journal is renamed aside
+     * under the lock so writers keep appending to a fresh one while the snapshot
+     * is written; the final rename back into place happens under the lock again, and
+     * only if the renamed journal is still the one this compaction set aside.
+     * The records do not change, so both steps only re-stamp the published state.
+     *
+     * <p>An abandoned compacting journal (see {@link #abandonedCompaction}) is folded
+     * together with the live one in a single step under the lock instead, so a failed
+     * compaction is retried rather than leaving every later load to replay it.
+     */
+    private void compact() {
+        try {
+            compactJournals();
+        } finally {
+            synchronized (this) {
+                compactionQueued = false;
+            }
+        }
+    }
+
+    private void compactJournals() {
+        List<T> snapshot;
+        List<Object> setAside;
+        StoreLock lock = dao.storeLock();
+        try {
+            // Other processes must not append between our last read and the rename.
+            lock.lock();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            synchronized (this) {
+                State<T> current = load();
+                boolean abandoned = abandonedCompaction();
+                if (Files.exists(compacting) && !abandoned) {
+                    // Another process is compacting; a later trigger looks again.
+                    return;
+                }
+                if (!Files.exists(journal) && !abandoned) {
+                    return;
+                }
+                snapshot = new ArrayList<>(current.records.size());
+                current.records.forEach(snapshot::add);
+                writing = true;
+                try {
+                    if (abandoned) {
+                        Path temp = Paths.get(path + ".compact.tmp");
+                        try {
+                            dao.writeSnapshotFile(temp, snapshot, csv);
+                            dao.getFsyncPolicy().publish(temp, path);
+                        } finally {
+                            Files.deleteIfExists(temp);
+                        }
+                        Files.delete(compacting);
+                        Files.deleteIfExists(journal);
+                        restamp();
+                        return;
+                    }
+                    Files.move(journal, compacting, StandardCopyOption.REPLACE_EXISTING);
+                    // Dated from the rename, so other processes can tell a running compaction.
+                    Files.setLastModifiedTime(compacting, FileTime.fromMillis(System.currentTimeMillis()));
+                    setAside = compactingKey();
+                    restamp();
+                } finally {
+                    writing = false;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            lock.unlock();
+        }
+
+        Path temp = Paths.get(path + ".compact.tmp");
+        try {
+            dao.writeSnapshotFile(temp, snapshot, csv);
+            lock.lock();
+            try {
+                synchronized (this) {
+                    if (!setAside.equals(compactingKey())) {
+                        // Folded by another process's retry meanwhile: ours is out of date.
+                        return;
+                    }
+                    writing = true;
+                    try {
+                        dao.getFsyncPolicy().publish(temp, path);
+                        Files.delete(compacting);
+                        restamp();
+                    } finally {
+                        writing = false;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            // The renamed journal stays in place and is replayed on every load until a
+            // retry folds it, once it is QUIET_MILLIS old. A segment whose snapshot cannot
+            // be written at all (an amount a column file cannot hold) stays in CSV.
+            e.printStackTrace();
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Identity of the compacting journal, or an empty list if there is none.
+     */
+    private List<Object> compactingKey() throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(compacting, BasicFileAttributes.class);
+            return Arrays.asList(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime());
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private void restamp() throws IOException {
+        State<T> current = state.get();
+        if (current != null) {
+            state.set(new State<>(current.records, stamp(), current.events, current.tornTail));
+        }
+    }
+
+    /**
+     * The files' current sizes and modification times as one string; equal strings
+     * mean the files were not touched in between.
+     */
+    String fileStamp() throws IOException {
+        StringBuilder result = new StringBuilder();
+        for (long part : stamp()) {
+            result.append(result.length() == 0 ? "" : ":").append(part);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Cheap fingerprint of the backing files: sizes and modification times of the
+     * snapshot and, in journal mode, both journals. Missing journals count as empty.
+     */
+    private long[] stamp() throws IOException {
+        long[] stamp = new long[journal != null ? 6 : 2];
+        fileStamp(path, stamp, 0);
+        if (journal != null) {
+            fileStamp(journal, stamp, 2);
+            fileStamp(compacting, stamp, 4);
+        }
+        return stamp;
+    }
+
+    private void fileStamp(Path file, long[] stamp, int offset) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            stamp[offset] = attributes.size();
+            stamp[offset + 1] = attributes.lastModifiedTime().toMillis();
+        } catch (NoSuchFileException e) {
+            // A missing file reads as empty; it is created by the first write.
+            stamp[offset] = -1;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered UTF-8 CSV writer over a file channel, handed to {@link BaseDao#printRecord}.
+ * Values are quoted only when they would not read back unchanged (delimiter, quote,
+ * line break, or surrounding whitespace); records end with CRLF.
+ */
+public final class CsvWriter implements Closeable, Flushable {
+    private final FileChannel channel;
+    private final Writer out;
+    private boolean midRecord;
+
+    private CsvWriter(FileChannel channel) {
+        this.channel = channel;
+        this.out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 1 << 13), 1 << 16);
+    }
+
+    /**
+     * Replaces the file with one holding just the header row.
+     */
+    static CsvWriter create(Path path, String[] header) throws IOException {
+        CsvWriter writer = new CsvWriter(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        writer.printRecord((Object[]) header);
+        return writer;
+    }
+
+    /**
+     * Appends to the file, writing the header first if the file is new or empty.
+     */
+    static CsvWriter append(Path path, String[] header) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        CsvWriter writer = new CsvWriter(channel);
+        if (channel.size() == 0) {
+            writer.printRecord((Object[]) header);
+        }
+        return writer;
+    }
+
+    public void print(Object value) throws IOException {
+        if (midRecord) {
+            out.write(',');
+        }
+        midRecord = true;
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (needsQuotes(text)) {
+            out.write('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    out.write('"');
+                }
+                out.write(c);
+            }
+            out.write('"');
+        } else {
+            out.write(text);
+        }
+    }
+
+    public void printRecord(Object... values) throws IOException {
+        for (Object value : values) {
+            print(value);
+        }
+        println();
+    }
+
+    public void println() throws IOException {
+        out.write("\r\n");
+        midRecord = false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes and forces the written bytes to the storage device.
+     */
+    void sync() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static boolean needsQuotes(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        if (Character.isWhitespace(text.charAt(0)) || Character.isWhitespace(text.charAt(text.length() - 1))) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
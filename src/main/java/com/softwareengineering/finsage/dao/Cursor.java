@@ -0,0 +1,80 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Forward-only iterator over DAO records that holds an open file until it is closed
+ * or exhausted. Records from files nobody has cached yet are parsed one at a time as
+ * the cursor advances, so a scan that stops early never reads the rest of the file.
+ * Use it in try-with-resources:
+ *
+ * <pre>
+ * try (Cursor&lt;User&gt; users = userDao.cursor()) {
+ *     while (users.hasNext()) { ... }
+ * }
+ * </pre>
+ */
+public class Cursor<T> implements Iterator<T>, Closeable {
+    private final Iterator<T> iterator;
+    private final Closeable resource;
+    private boolean closed;
+
+    Cursor(Iterator<T> iterator, Closeable resource) {
+        this.iterator = iterator;
+        this.resource = resource;
+    }
+
+    static <T> Cursor<T> of(Iterator<T> iterator) {
+        return new Cursor<>(iterator, null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (iterator.hasNext()) {
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return iterator.next();
+    }
+
+    /**
+     * The remaining records as a sequential stream; closing the stream closes the cursor.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
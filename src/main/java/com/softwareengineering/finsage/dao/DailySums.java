@@ -0,0 +1,124 @@
+package com.softwareengineering.finsage.dao;
+
+import java.util.Arrays;
+
+/**
+ * Cents per day, kept in blocks of {@value #BLOCK_DAYS} consecutive days that are
+ * allocated only once one of their days has any, with a Fenwick tree over the block
+ * totals. Memory follows the blocks in use rather than the span between the earliest
+ * and the latest day, so a mistyped far-off date costs one block.
+ *
+ * <p>Adding to a day of an existing block, backdated or not, updates the block and
+ * O(log b) tree nodes for b blocks; summing a range takes two O(log b) prefix lookups
+ * plus at most two partial blocks. Only a new block before the latest one shifts the
+ * blocks after it and rebuilds the tree, in O(b), which happens about once a month at
+ * most for entries dated in order and once per new block when importing old history.
+ */
+final class DailySums {
+    private static final int BLOCK_DAYS = 32;
+
+    // Sorted block numbers (day / BLOCK_DAYS) and, at the same position, their days
+    private long[] keys = new long[8];
+    private long[][] blocks = new long[8][];
+    private long[] totals = new long[8];
+    // 1-based Fenwick tree over totals[0..size)
+    private long[] tree = new long[9];
+    private int size;
+
+    void add(long day, long cents) {
+        if (cents == 0) {
+            return;
+        }
+        long key = Math.floorDiv(day, BLOCK_DAYS);
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position < 0) {
+            position = insert(-position - 1, key);
+        }
+        long[] block = blocks[position];
+        int offset = Math.floorMod(day, BLOCK_DAYS);
+        block[offset] = Math.addExact(block[offset], cents);
+        totals[position] = Math.addExact(totals[position], cents);
+        for (int i = position + 1; i <= size; i += i & -i) {
+            tree[i] = Math.addExact(tree[i], cents);
+        }
+    }
+
+    /**
+     * Sum over days {@code from} to {@code to}, both inclusive.
+     */
+    long sum(long from, long to) {
+        if (size == 0 || from > to) {
+            return 0;
+        }
+        long before = from == Long.MIN_VALUE ? 0 : through(from - 1);
+        return Math.subtractExact(through(to), before);
+    }
+
+    /**
+     * Sum over every day up to and including {@code day}.
+     */
+    private long through(long day) {
+        long key = Math.floorDiv(day, BLOCK_DAYS);
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position < 0) {
+            return prefix(-position - 1);
+        }
+        long sum = prefix(position);
+        long[] block = blocks[position];
+        int last = Math.floorMod(day, BLOCK_DAYS);
+        for (int i = 0; i <= last; i++) {
+            sum = Math.addExact(sum, block[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of the first {@code count} blocks.
+     */
+    private long prefix(int count) {
+        long sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum = Math.addExact(sum, tree[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds an empty block at {@code position} and returns the position.
+     */
+    private int insert(int position, long key) {
+        if (size == keys.length) {
+            int capacity = size + (size >> 1);
+            keys = Arrays.copyOf(keys, capacity);
+            blocks = Arrays.copyOf(blocks, capacity);
+            totals = Arrays.copyOf(totals, capacity);
+            tree = Arrays.copyOf(tree, capacity + 1);
+        }
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(blocks, position, blocks, position + 1, size - position);
+        System.arraycopy(totals, position, totals, position + 1, size - position);
+        keys[position] = key;
+        blocks[position] = new long[BLOCK_DAYS];
+        totals[position] = 0;
+        size++;
+        if (position == size - 1) {
+            // Appended with a zero total: its node covers the (i & -i) blocks ending here.
+            int node = size;
+            tree[node] = Math.subtractExact(prefix(node - 1), prefix(node - (node & -node)));
+        } else {
+            rebuild();
+        }
+        return position;
+    }
+
+    private void rebuild() {
+        Arrays.fill(tree, 0);
+        for (int i = 1; i <= size; i++) {
+            tree[i] = Math.addExact(tree[i], totals[i - 1]);
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] = Math.addExact(tree[parent], tree[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells {@link CsvStore}s when their files change on disk, so a store only re-checks
+ * its files after something actually happened to them instead of on every read. One
+ * daemon thread serves every watched directory. Events from this process's own writes
+ * arrive too; they just cost the store one cheap stamp check.
+ *
+ * <p>Where the platform has no usable watch service {@link #watch} returns false and
+ * the store keeps checking its files on every read.
+ */
+final class DataWatcher {
+    private static final Map<Path, List<Registration>> DIRECTORIES = new ConcurrentHashMap<>();
+    private static WatchService service;
+
+    private DataWatcher() {}
+
+    private record Registration(String prefix, Runnable onChange) {}
+
+    /**
+     * Calls {@code onChange} whenever a file in {@code file}'s directory whose name
+     * starts with {@code file}'s name is created, modified or deleted (the file itself,
+     * its journals and temp files). Returns false if the directory cannot be watched.
+     */
+    static boolean watch(Path file, Runnable onChange) {
+        Path directory = file.toAbsolutePath().normalize().getParent();
+        try {
+            List<Registration> registrations = DIRECTORIES.get(directory);
+            if (registrations == null) {
+                synchronized (DataWatcher.class) {
+                    registrations = DIRECTORIES.get(directory);
+                    if (registrations == null) {
+                        directory.toFile().mkdirs();
+                        directory.register(service(), StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                        registrations = new CopyOnWriteArrayList<>();
+                        DIRECTORIES.put(directory, registrations);
+                    }
+                }
+            }
+            registrations.add(new Registration(file.getFileName().toString(), onChange));
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static WatchService service() throws IOException {
+        if (service == null) {
+            service = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(DataWatcher::run, "dao-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return service;
+    }
+
+    private static void run() {
+        try {
+            for (;;) {
+                WatchKey key = service.take();
+                List<Registration> registrations = DIRECTORIES.get((Path) key.watchable());
+                if (registrations != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        // An overflow has no file name: every store in the directory re-checks.
+                        String name = event.context() instanceof Path path ? path.toString() : null;
+                        for (Registration registration : registrations) {
+                            if (name == null || name.startsWith(registration.prefix())) {
+                                registration.onChange().run();
+                            }
+                        }
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Daemon thread: ends with the process.
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When DAO writes are forced to disk. Every file rewrite goes to a temp file in the same
+ * directory and is published with an atomic move, so readers and crashes only ever see
+ * the old or the new file; the policy decides how much of that is also power-loss safe.
+ *
+ * <ul>
+ *   <li>{@link #ALWAYS}: the temp file is forced before the move, the directory after it,
+ *       and every journal append before the write returns.</li>
+ *   <li>{@link #batched batched(n)}: the temp file is still forced before the move, which
+ *       is what keeps a replacement from surfacing empty after a power cut. Directory
+ *       entries and journal appends are forced together by a background thread at most
+ *       {@code n} ms later.</li>
+ *   <li>{@link #NEVER}: nothing is forced; the operating system writes back when it likes.</li>
+ * </ul>
+ *
+ * The default comes from the {@code finsage.fsync} system property ({@code always},
+ * {@code never} or a batch interval in milliseconds) and is otherwise a one second batch.
+ */
+public final class FsyncPolicy {
+    public static final FsyncPolicy ALWAYS = new FsyncPolicy(0);
+    public static final FsyncPolicy NEVER = new FsyncPolicy(-1);
+
+    private static final ScheduledExecutorService SYNCER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dao-fsync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long intervalMillis;
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private boolean scheduled;
+
+    private FsyncPolicy(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Forces journal appends and directory entries at most {@code intervalMillis} after
+     * they were written, one batch for everything dirty in that window.
+     */
+    public static FsyncPolicy batched(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Batch interval must be positive: " + intervalMillis);
+        }
+        return new FsyncPolicy(intervalMillis);
+    }
+
+    static FsyncPolicy fromSystemProperty() {
+        String value = System.getProperty("finsage.fsync", "1000").trim();
+        if (value.equalsIgnoreCase("always")) {
+            return ALWAYS;
+        }
+        if (value.equalsIgnoreCase("never")) {
+            return NEVER;
+        }
+        try {
+            long interval = Long.parseLong(value);
+            return interval <= 0 ? ALWAYS : batched(interval);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid finsage.fsync value: " + value);
+            return batched(1000);
+        }
+    }
+
+    /**
+     * Called once an append to {@code file} has been written to {@code writer}, before
+     * the writer is closed.
+     */
+    void appended(CsvWriter writer, Path file) throws IOException {
+        if (intervalMillis == 0) {
+            writer.sync();
+        } else if (intervalMillis > 0) {
+            writer.flush();
+            schedule(file);
+        }
+    }
+
+    /**
+     * Moves a fully written temp file over {@code target}, forcing it first unless
+     * the policy is {@link #NEVER}. The temp file must be in the target's directory.
+     */
+    void publish(Path temp, Path target) throws IOException {
+        if (intervalMillis >= 0) {
+            force(temp, false);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path directory = target.toAbsolutePath().getParent();
+        if (intervalMillis == 0) {
+            force(directory, true);
+        } else if (intervalMillis > 0) {
+            schedule(directory);
+        }
+    }
+
+    /**
+     * Forces everything still waiting for the next batch.
+     */
+    public void syncNow() {
+        List<Path> batch = new ArrayList<>(pending);
+        pending.removeAll(batch);
+        for (Path path : batch) {
+            try {
+                force(path, Files.isDirectory(path));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void schedule(Path path) {
+        pending.add(path);
+        synchronized (this) {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        SYNCER.schedule(() -> {
+            synchronized (this) {
+                scheduled = false;
+            }
+            syncNow();
+        }, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static void force(Path path, boolean directory) throws IOException {
+        if (directory) {
+            // Not every platform can open a directory (Windows cannot); its entries
+            // are then as durable as the file system makes them on its own.
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // best effort
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        } catch (NoSuchFileException e) {
+            // Compacted or deleted since; whatever replaced it was forced on its own.
+        }
+    }
+
+    @Override
+    public String toString() {
+        return intervalMillis == 0 ? "always" : intervalMillis < 0 ? "never" : "batched(" + intervalMillis + "ms)";
+    }
+}
@@ -1,26 +1,29 @@
 package com.softwareengineering.finsage.dao;
 
 import com.softwareengineering.finsage.model.Holiday;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Predicate;
 
 public class HolidayDao extends BaseDao<Holiday> {
     private static final String[] HEADERS = {"id", "name", "startDate", "endDate", "userId"};
     private static final String CSV_FILE = "data/holidays.csv";
 
+    private static final String BY_USER = "userId";
+    private static final String BY_USER_NAME = "userId+name";
+
     public HolidayDao() {
         super(CSV_FILE, HEADERS);
+        addIndex(BY_USER, Holiday::getUserId);
+        addIndex(BY_USER_NAME, Holiday::getUserId, ignoreCase(Holiday::getName));
     }
 
     @Override
-    protected void printRecord(CSVPrinter printer, Holiday holiday) throws IOException {
+    protected void printRecord(CsvWriter printer, Holiday holiday) throws IOException {
         printer.printRecord(
                 holiday.getId(),
                 holiday.getName(),
@@ -31,7 +34,7 @@ public class HolidayDao extends BaseDao<Holiday> {
     }
 
     @Override
-    protected Holiday parseRecord(CSVRecord record) {
+    protected Holiday parseRecord(CsvRow record) {
         Holiday holiday = new Holiday();
         holiday.setId(record.get("id"));
         holiday.setName(record.get("name"));
@@ -46,8 +49,29 @@ public class HolidayDao extends BaseDao<Holiday> {
         return holiday.getId();
     }
 
+    @Override
+    protected Holiday copy(Holiday holiday) {
+        return new Holiday(holiday.getId(), holiday.getName(), holiday.getStartDate(), holiday.getEndDate(), holiday.getUserId());
+    }
+
     public List<Holiday> getByUserId(String userId) {
-        return findBy(h -> h.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId));
+    }
+
+    /**
+     * The user's holidays in start-date order.
+     */
+    public List<Holiday> getByUserIdSortedByStart(String userId) {
+        HolidayIndex index = index();
+        long reloads = getReloadCount();
+        List<Holiday> holidays = index.sorted(userId, reloads);
+        if (holidays == null) {
+            holidays = readConsistently(() -> {
+                index.build(userId, reloads, getByUserId(userId));
+                return index.sorted(userId, reloads);
+            });
+        }
+        return copies(holidays);
     }
 
     public Holiday getByDate(LocalDate date, String userId) {
@@ -64,9 +88,7 @@ public class HolidayDao extends BaseDao<Holiday> {
     }
 
     public Optional<Holiday> getByNameAndUserId(String name, String userId) {
-        return getAll().stream()
-                .filter(h -> h.getName().equalsIgnoreCase(name) && h.getUserId().equals(userId))
-                .findFirst();
+        return findFirst(indexed(BY_USER_NAME, userId, name));
     }
 
     public boolean existsByNameAndUserId(String name, String userId) {
@@ -74,6 +96,23 @@ public class HolidayDao extends BaseDao<Holiday> {
     }
 
     public List<Holiday> searchByName(String name, String userId) {
-        return findBy(h -> h.getName().toLowerCase().contains(name.toLowerCase()) && h.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId).and(h -> h.getName().toLowerCase().contains(name.toLowerCase())));
+    }
+
+    @Override
+    protected void changed(Holiday before, Holiday after) {
+        index().changed(before, after);
+    }
+
+    private List<Holiday> copies(List<Holiday> holidays) {
+        List<Holiday> result = new ArrayList<>(holidays.size());
+        for (Holiday holiday : holidays) {
+            result.add(copy(holiday));
+        }
+        return result;
+    }
+
+    private HolidayIndex index() {
+        return attachment(HolidayIndex.class, HolidayIndex::new);
     }
 }
@@ -0,0 +1,62 @@
+package com.softwareengineering.finsage.dao;
+
+import com.softwareengineering.finsage.model.Holiday;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Each user's holidays in start-date order, so the festival views get them sorted without
+ * sorting on every call.
+ *
+ * <p>A user's list is built from one consistent read the first time it is asked for and
+ * dropped by any change to that user's holidays (they change rarely, so the next call
+ * simply rebuilds it); everything is dropped when the {@link HolidayDao}'s reload count
+ * moves.
+ */
+final class HolidayIndex {
+    private static final Comparator<Holiday> BY_START = Comparator.comparing(Holiday::getStartDate)
+            .thenComparing(Holiday::getEndDate)
+            .thenComparing(Holiday::getId);
+
+    private final Map<String, List<Holiday>> users = new HashMap<>();
+    private long reloads = -1;
+
+    /**
+     * All of the user's holidays in start order, or null if the user's list is not built
+     * at this reload count.
+     */
+    synchronized List<Holiday> sorted(String userId, long reloadCount) {
+        List<Holiday> holidays = reloadCount == reloads ? users.get(userId) : null;
+        return holidays == null ? null : new ArrayList<>(holidays);
+    }
+
+    /**
+     * Builds the user's list from all of the user's holidays, read at
+     * {@code reloadCount} while no change was being committed.
+     */
+    synchronized void build(String userId, long reloadCount, List<Holiday> holidays) {
+        if (reloadCount != reloads) {
+            users.clear();
+            reloads = reloadCount;
+        }
+        List<Holiday> sorted = new ArrayList<>(holidays);
+        sorted.sort(BY_START);
+        users.put(userId, sorted);
+    }
+
+    /**
+     * Drops the list of the user whose holiday changed (null for absent).
+     */
+    synchronized void changed(Holiday before, Holiday after) {
+        if (before != null) {
+            users.remove(before.getUserId());
+        }
+        if (after != null) {
+            users.remove(after.getUserId());
+        }
+    }
+}
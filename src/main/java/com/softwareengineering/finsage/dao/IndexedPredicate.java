@@ -0,0 +1,50 @@
+package com.softwareengineering.finsage.dao;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Predicate backed by a secondary index: "the index key equals these values",
+ * optionally narrowed by a residual filter. {@link BaseDao#findBy} recognises it and
+ * probes the index instead of scanning; anywhere else it behaves like a normal predicate.
+ */
+class IndexedPredicate<T> implements Predicate<T> {
+    private final SecondaryIndex<T> index;
+    private final Object[] values;
+    private final Predicate<T> residual;
+
+    IndexedPredicate(SecondaryIndex<T> index, Object[] values, Predicate<T> residual) {
+        this.index = index;
+        this.values = values;
+        this.residual = residual;
+    }
+
+    SecondaryIndex<T> getIndex() {
+        return index;
+    }
+
+    String getKey() {
+        return index.keyFor(values);
+    }
+
+    Predicate<T> getResidual() {
+        return residual;
+    }
+
+    @Override
+    public boolean test(T item) {
+        String key = getKey();
+        return key != null && key.equals(index.keyOf(item)) && (residual == null || residual.test(item));
+    }
+
+    /**
+     * Keeps the index probe and folds {@code other} into the residual filter, so
+     * {@code indexed(...).and(...)} chains still take the fast path.
+     */
+    @Override
+    public IndexedPredicate<T> and(Predicate<? super T> other) {
+        Objects.requireNonNull(other);
+        Predicate<T> combined = residual == null ? other::test : residual.and(other);
+        return new IndexedPredicate<>(index, values, combined);
+    }
+}
@@ -0,0 +1,86 @@
+package com.softwareengineering.finsage.dao;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sorted index from a numeric key (an epoch day, say) to record ids, so any key window
+ * is one contiguous slice found by two binary searches. Built once over a
+ * {@link RecordMap}'s base; every record must have a key.
+ */
+final class RangeIndex<T> {
+    private record Entry(long key, String id) {}
+
+    private final String name;
+    private final ToLongFunction<T> key;
+    private final long[] keys;
+    private final String[] ids;
+
+    RangeIndex(String name, ToLongFunction<T> key) {
+        this(name, key, new long[0], new String[0]);
+    }
+
+    private RangeIndex(String name, ToLongFunction<T> key, long[] keys, String[] ids) {
+        this.name = name;
+        this.key = key;
+        this.keys = keys;
+        this.ids = ids;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Same definition over {@code records}; ids with equal keys keep the records' order.
+     */
+    RangeIndex<T> build(Map<String, T> records) {
+        Entry[] entries = new Entry[records.size()];
+        int i = 0;
+        for (Map.Entry<String, T> record : records.entrySet()) {
+            entries[i++] = new Entry(key.applyAsLong(record.getValue()), record.getKey());
+        }
+        Arrays.sort(entries, Comparator.comparingLong(Entry::key));
+        long[] sortedKeys = new long[entries.length];
+        String[] sortedIds = new String[entries.length];
+        for (i = 0; i < entries.length; i++) {
+            sortedKeys[i] = entries[i].key();
+            sortedIds[i] = entries[i].id();
+        }
+        return new RangeIndex<>(name, key, sortedKeys, sortedIds);
+    }
+
+    long keyOf(T item) {
+        return key.applyAsLong(item);
+    }
+
+    /**
+     * Position of the first entry with a key of at least {@code from}.
+     */
+    int lowerBound(long from) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Position just past the last entry with a key of at most {@code to}.
+     */
+    int upperBound(long to) {
+        return to == Long.MAX_VALUE ? keys.length : lowerBound(to + 1);
+    }
+
+    String id(int position) {
+        return ids[position];
+    }
+}
@@ -0,0 +1,245 @@
+package com.softwareengineering.finsage.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable id-keyed records of one {@link CsvStore} state, in file order. A new
+ * version is a shared base map plus a small delta of the changes made since the base
+ * was built (a null value marks a removal), so publishing a write costs the size of
+ * the delta rather than of the store. Once the delta outgrows roughly the square root
+ * of the base it is folded into a fresh base and the indexes are rebuilt.
+ *
+ * <p>Secondary and range indexes describe the base only; lookups re-check the delta.
+ */
+final class RecordMap<T> implements Iterable<T> {
+    private static final int MIN_DELTA = 32;
+
+    private final Map<String, T> base;
+    private final Map<String, SecondaryIndex<T>> indexes;
+    private final Map<String, RangeIndex<T>> ranges;
+    private final Map<String, T> delta;
+    private final int size;
+
+    private RecordMap(Map<String, T> base, Map<String, SecondaryIndex<T>> indexes, Map<String, RangeIndex<T>> ranges,
+                      Map<String, T> delta, int size) {
+        this.base = base;
+        this.indexes = indexes;
+        this.ranges = ranges;
+        this.delta = delta;
+        this.size = size;
+    }
+
+    /**
+     * Takes ownership of {@code records} and indexes them with fresh copies of the
+     * given index definitions.
+     */
+    static <T> RecordMap<T> of(LinkedHashMap<String, T> records, Collection<SecondaryIndex<T>> definitions,
+                               Collection<RangeIndex<T>> rangeDefinitions) {
+        Map<String, SecondaryIndex<T>> indexes = new LinkedHashMap<>();
+        for (SecondaryIndex<T> definition : definitions) {
+            SecondaryIndex<T> index = definition.newEmpty();
+            records.forEach(index::add);
+            indexes.put(index.getName(), index);
+        }
+        Map<String, RangeIndex<T>> ranges = new LinkedHashMap<>();
+        for (RangeIndex<T> definition : rangeDefinitions) {
+            ranges.put(definition.getName(), definition.build(records));
+        }
+        return new RecordMap<>(records, indexes, ranges, Map.of(), records.size());
+    }
+
+    T get(String id) {
+        return delta.containsKey(id) ? delta.get(id) : base.get(id);
+    }
+
+    boolean containsKey(String id) {
+        return get(id) != null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * This map with {@code changes} applied (id to new record, or to null for a removal).
+     */
+    RecordMap<T> with(Map<String, T> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        int resized = size;
+        for (Map.Entry<String, T> change : changes.entrySet()) {
+            boolean before = containsKey(change.getKey());
+            boolean after = change.getValue() != null;
+            resized += (after ? 1 : 0) - (before ? 1 : 0);
+        }
+        LinkedHashMap<String, T> merged = new LinkedHashMap<>(delta);
+        merged.putAll(changes);
+        if (merged.size() <= Math.max(MIN_DELTA, (int) Math.sqrt(base.size()))) {
+            return new RecordMap<>(base, indexes, ranges, merged, resized);
+        }
+        LinkedHashMap<String, T> folded = new LinkedHashMap<>(base);
+        merged.forEach((id, item) -> {
+            if (item == null) {
+                folded.remove(id);
+            } else {
+                folded.put(id, item);
+            }
+        });
+        return of(folded, indexes.values(), ranges.values());
+    }
+
+    /**
+     * The same records indexed by the given definitions.
+     */
+    RecordMap<T> reindex(Collection<SecondaryIndex<T>> definitions, Collection<RangeIndex<T>> rangeDefinitions) {
+        LinkedHashMap<String, T> records = new LinkedHashMap<>(size * 2);
+        for (Map.Entry<String, T> entry : entries()) {
+            records.put(entry.getKey(), entry.getValue());
+        }
+        return of(records, definitions, rangeDefinitions);
+    }
+
+    /**
+     * Ids of the records whose key in index {@code name} is {@code key}.
+     */
+    List<String> ids(String name, String key) {
+        List<String> ids = new ArrayList<>();
+        if (key == null) {
+            return ids;
+        }
+        SecondaryIndex<T> index = indexes.get(name);
+        Set<String> indexed = index.ids(key);
+        for (String id : indexed) {
+            if (!delta.containsKey(id)) {
+                ids.add(id);
+            } else {
+                T item = delta.get(id);
+                if (item != null && key.equals(index.keyOf(item))) {
+                    ids.add(id);
+                }
+            }
+        }
+        for (Map.Entry<String, T> change : delta.entrySet()) {
+            T item = change.getValue();
+            if (item != null && !indexed.contains(change.getKey()) && key.equals(index.keyOf(item))) {
+                ids.add(change.getKey());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Upper bound on {@code ids(name, key).size()} without building the list.
+     */
+    int estimate(String name, String key) {
+        return key == null ? 0 : indexes.get(name).ids(key).size() + delta.size();
+    }
+
+    /**
+     * Records whose key in range index {@code name} is in [from, to], in key order: a
+     * binary-searched slice of the base, merged with the delta's matches.
+     */
+    List<T> range(String name, long from, long to) {
+        RangeIndex<T> index = ranges.get(name);
+        List<T> result = new ArrayList<>();
+        for (int i = index.lowerBound(from), end = index.upperBound(to); i < end; i++) {
+            String id = index.id(i);
+            if (!delta.containsKey(id)) {
+                result.add(base.get(id));
+            }
+        }
+        boolean merged = false;
+        for (T item : delta.values()) {
+            if (item != null) {
+                long key = index.keyOf(item);
+                if (key >= from && key <= to) {
+                    result.add(item);
+                    merged = true;
+                }
+            }
+        }
+        if (merged) {
+            result.sort(Comparator.comparingLong(index::keyOf));
+        }
+        return result;
+    }
+
+    /**
+     * Upper bound on {@code range(name, from, to).size()} from the two binary searches.
+     */
+    int estimateRange(String name, long from, long to) {
+        RangeIndex<T> index = ranges.get(name);
+        return Math.max(0, index.upperBound(to) - index.lowerBound(from)) + delta.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<Map.Entry<String, T>> entries = entries().iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return entries.next().getValue();
+            }
+        };
+    }
+
+    /**
+     * Live records in order: base positions first (with their current values), then
+     * records added since the base was built.
+     */
+    private Iterable<Map.Entry<String, T>> entries() {
+        if (delta.isEmpty()) {
+            return base.entrySet();
+        }
+        return () -> new Iterator<Map.Entry<String, T>>() {
+            private final Iterator<Map.Entry<String, T>> baseEntries = base.entrySet().iterator();
+            private final Iterator<Map.Entry<String, T>> deltaEntries = delta.entrySet().iterator();
+            private Map.Entry<String, T> next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (baseEntries.hasNext()) {
+                        Map.Entry<String, T> entry = baseEntries.next();
+                        T item = delta.containsKey(entry.getKey()) ? delta.get(entry.getKey()) : entry.getValue();
+                        if (item != null) {
+                            next = Map.entry(entry.getKey(), item);
+                        }
+                    } else if (deltaEntries.hasNext()) {
+                        Map.Entry<String, T> entry = deltaEntries.next();
+                        if (entry.getValue() != null && !base.containsKey(entry.getKey())) {
+                            next = entry;
+                        }
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Map.Entry<String, T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, T> entry = next;
+                next = null;
+                return entry;
+            }
+        };
+    }
+}
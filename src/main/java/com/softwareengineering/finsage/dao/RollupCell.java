@@ -0,0 +1,17 @@
+package com.softwareengineering.finsage.dao;
+
+import com.softwareengineering.finsage.model.Money;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * One cell of the transaction rollup: a user's transactions of one month and category
+ * on one side of zero. {@code cents} is a magnitude, so expense cells are positive
+ * too; zero amounts belong to no cell.
+ */
+public record RollupCell(YearMonth month, String categoryId, boolean expense, long cents, long count) {
+    public BigDecimal amount() {
+        return Money.toBigDecimal(cents);
+    }
+}
@@ -0,0 +1,106 @@
+package com.softwareengineering.finsage.dao;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Hash index from a (possibly composite) key to the ids of the records that carry it.
+ * Key parts wrapped with {@link BaseDao#ignoreCase} are lower-cased on both the
+ * record side and the lookup side. Records with a null key part are not indexed.
+ */
+class SecondaryIndex<T> {
+    private static final char SEPARATOR = '\u001F';
+
+    private final String name;
+    private final List<Function<T, ?>> parts;
+    private final boolean[] ignoreCase;
+    private final Map<String, Set<String>> entries = new HashMap<>();
+
+    SecondaryIndex(String name, List<Function<T, ?>> parts) {
+        this.name = name;
+        this.parts = List.copyOf(parts);
+        this.ignoreCase = new boolean[parts.size()];
+        for (int i = 0; i < ignoreCase.length; i++) {
+            ignoreCase[i] = this.parts.get(i) instanceof BaseDao.IgnoreCase;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Same definition, no entries: each partition store keeps its own instance.
+     */
+    SecondaryIndex<T> newEmpty() {
+        return new SecondaryIndex<>(name, parts);
+    }
+
+    String keyOf(T item) {
+        Object[] values = new Object[parts.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = parts.get(i).apply(item);
+        }
+        return keyFor(values);
+    }
+
+    /**
+     * Builds the lookup key for the given part values, or null if any part is null
+     * or the number of values does not match the index definition.
+     */
+    String keyFor(Object[] values) {
+        if (values.length != parts.size()) {
+            throw new IllegalArgumentException("Index " + name + " expects " + parts.size() + " key parts");
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                return null;
+            }
+            if (i > 0) {
+                key.append(SEPARATOR);
+            }
+            String value = values[i].toString();
+            key.append(ignoreCase[i] ? value.toLowerCase(Locale.ROOT) : value);
+        }
+        return key.toString();
+    }
+
+    void add(String id, T item) {
+        String key = keyOf(item);
+        if (key != null) {
+            entries.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    void remove(String id, T item) {
+        String key = keyOf(item);
+        if (key == null) {
+            return;
+        }
+        Set<String> ids = entries.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    Set<String> ids(String key) {
+        if (key == null) {
+            return Collections.emptySet();
+        }
+        return entries.getOrDefault(key, Collections.emptySet());
+    }
+
+    void clear() {
+        entries.clear();
+    }
+}
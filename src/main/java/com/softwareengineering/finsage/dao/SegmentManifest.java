@@ -0,0 +1,130 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Small CSV file listing the segments of one partition group together with the
+ * smallest and largest range key stored in each. Range queries read it to decide
+ * which segment files to open at all.
+ *
+ * <p>The file is only ever wider than the data: ranges are widened before a segment
+ * is written and narrowed after, so a crash in between costs at most an extra
+ * segment read, never a missed one. Every call first re-reads the file if another
+ * DAO instance has rewritten it.
+ */
+class SegmentManifest {
+    static final String FILE_NAME = "segments.manifest";
+    private static final String[] HEADERS = {"segment", "first", "last"};
+
+    private final BaseDao<?> dao;
+    private final Path file;
+    private final TreeMap<String, String[]> ranges = new TreeMap<>();
+    private long[] knownStamp = {-1, -1};
+
+    SegmentManifest(BaseDao<?> dao, Path groupDirectory) {
+        this.dao = dao;
+        this.file = groupDirectory.resolve(FILE_NAME);
+    }
+
+    boolean exists() {
+        return Files.exists(file);
+    }
+
+    private void sync() throws IOException {
+        long[] stamp = stamp();
+        if (Arrays.equals(stamp, knownStamp)) {
+            return;
+        }
+        ranges.clear();
+        knownStamp = stamp;
+        if (stamp[0] < 0) {
+            return;
+        }
+        try (CsvReader reader = CsvReader.open(file)) {
+            CsvRow record = reader.row();
+            while (reader.next()) {
+                ranges.put(record.get("segment"), new String[]{record.get("first"), record.get("last")});
+            }
+        }
+    }
+
+    /**
+     * Segments whose range intersects [from, to]; a null bound is open.
+     */
+    synchronized List<String> overlapping(String from, String to) throws IOException {
+        sync();
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, String[]> entry : ranges.entrySet()) {
+            String[] range = entry.getValue();
+            if ((from == null || range[1].compareTo(from) >= 0) && (to == null || range[0].compareTo(to) <= 0)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Grows the segment's range to include [first, last], writing the file only if it changed.
+     */
+    synchronized void widen(String segment, String first, String last) throws IOException {
+        sync();
+        String[] range = ranges.get(segment);
+        if (range != null && range[0].compareTo(first) <= 0 && range[1].compareTo(last) >= 0) {
+            return;
+        }
+        if (range != null) {
+            first = range[0].compareTo(first) <= 0 ? range[0] : first;
+            last = range[1].compareTo(last) >= 0 ? range[1] : last;
+        }
+        ranges.put(segment, new String[]{first, last});
+        write();
+    }
+
+    /**
+     * Replaces the segment's range with the actual one; null drops an empty segment.
+     */
+    synchronized void set(String segment, String[] range) throws IOException {
+        sync();
+        String[] known = ranges.get(segment);
+        if (range == null ? known == null : known != null && known[0].equals(range[0]) && known[1].equals(range[1])) {
+            return;
+        }
+        if (range == null) {
+            ranges.remove(segment);
+        } else {
+            ranges.put(segment, range);
+        }
+        write();
+    }
+
+    private void write() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Paths.get(file + ".tmp");
+        try (CsvWriter printer = CsvWriter.create(temp, HEADERS)) {
+            for (Map.Entry<String, String[]> entry : ranges.entrySet()) {
+                printer.printRecord(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+        dao.getFsyncPolicy().publish(temp, file);
+        knownStamp = stamp();
+    }
+
+    private long[] stamp() throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new long[]{attributes.size(), attributes.lastModifiedTime().toMillis()};
+        } catch (NoSuchFileException e) {
+            return new long[]{-1, -1};
+        }
+    }
+}
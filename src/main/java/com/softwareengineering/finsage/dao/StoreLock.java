@@ -0,0 +1,106 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cross-process write lock for one DAO file, held on a sidecar {@code <file>.lock}.
+ * The sidecar's first eight bytes are a generation counter that every writer bumps
+ * after writing, so the next holder can tell whether another process (another
+ * FinSage instance on the same data directory) wrote in between and its cached
+ * records need re-checking before it edits them.
+ *
+ * <p>The lock covers a byte well past the counter rather than the counter itself:
+ * Windows file locks are mandatory, and other processes must still be able to read
+ * the generation while the lock is held. Within this process a plain lock comes
+ * first, because a JVM may hold only one lock per file.
+ */
+final class StoreLock {
+    private static final long LOCK_POSITION = 1L << 20;
+
+    private final Path file;
+    private final ReentrantLock local = new ReentrantLock();
+    private FileChannel channel;
+    private FileLock held;
+    private long generation = -1;
+
+    StoreLock(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Blocks until this thread holds the lock, in this process and on disk. Reentrant;
+     * only the outermost call touches the file.
+     */
+    void lock() throws IOException {
+        local.lock();
+        if (local.getHoldCount() > 1) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+            held = channel.lock(LOCK_POSITION, 1, false);
+        } catch (IOException | RuntimeException e) {
+            local.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * With the lock held: true if another process has written since the last call.
+     * Only the writer, which then re-checks every cached store, may ask.
+     */
+    boolean changedElsewhere() throws IOException {
+        long current = readGeneration();
+        boolean changed = current != generation;
+        generation = current;
+        return changed;
+    }
+
+    /**
+     * Records a write made under the lock, after {@link #changedElsewhere}.
+     */
+    void written() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, generation + 1);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        generation++;
+    }
+
+    void unlock() {
+        try {
+            if (local.getHoldCount() == 1 && held != null) {
+                held.release();
+                held = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            local.unlock();
+        }
+    }
+
+    /**
+     * The generation on disk, 0 for a sidecar nobody has written yet.
+     */
+    private long readGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        return buffer.getLong(0);
+    }
+}
@@ -0,0 +1,95 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide table of DAO state keyed by the absolute path of the DAO's file (or
+ * partition directory). Controllers, views and background tasks each construct their
+ * own DAOs; through this registry every instance for the same path shares one set of
+ * parsed stores, indexes and manifests, one {@link StoreWriter}, one cross-process
+ * {@link StoreLock} and one change counter, so a file is parsed once and writes from
+ * different threads (or processes) never interleave.
+ */
+final class StoreRegistry {
+    private static final Map<Path, Shared<?>> SHARED = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(StoreRegistry::flushAll, "dao-shutdown"));
+    }
+
+    private StoreRegistry() {}
+
+    /**
+     * Applies every queued write-behind write, writes out attachments that buffer
+     * ({@link Flushable} ones) and forces whatever the fsync policies are still holding
+     * back. Runs on a clean exit.
+     */
+    static void flushAll() {
+        for (Shared<?> shared : SHARED.values()) {
+            shared.writer.flush();
+            for (Object attachment : shared.attachments.values()) {
+                if (attachment instanceof Flushable flushable) {
+                    try {
+                        flushable.flush();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            shared.fsyncPolicy.syncNow();
+        }
+    }
+
+    /**
+     * The state for {@code path}, created on first use. A path belongs to one DAO class.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Shared<T> get(Path path, Class<?> owner) {
+        Path key = path.toAbsolutePath().normalize();
+        Shared<?> shared = SHARED.computeIfAbsent(key, k -> new Shared<>(owner, k));
+        if (shared.owner != owner) {
+            throw new IllegalStateException(key + " is already used by " + shared.owner.getSimpleName()
+                    + ", not " + owner.getSimpleName());
+        }
+        return (Shared<T>) shared;
+    }
+
+    /**
+     * Everything the DAO instances of one path have in common. The maps are guarded by
+     * the object's own monitor; all writes go through the writer.
+     */
+    static final class Shared<T> {
+        final Class<?> owner;
+        final Map<String, CsvStore<T>> stores = new LinkedHashMap<>();
+        final Map<String, SecondaryIndex<T>> indexes = new LinkedHashMap<>();
+        final Map<String, RangeIndex<T>> ranges = new LinkedHashMap<>();
+        final Map<String, SegmentManifest> manifests = new HashMap<>();
+        final StoreWriter<T> writer = new StoreWriter<>();
+        final StoreLock lock;
+        final AtomicLong changes = new AtomicLong();
+        final AtomicLong reloads = new AtomicLong();
+        final AtomicLong events = new AtomicLong();
+        final AtomicLong checkedEvents = new AtomicLong(-1);
+        final Object commitLock = new Object();
+        final Map<Class<?>, Object> attachments = new ConcurrentHashMap<>();
+        final List<ChangeListener<T>> listeners = new CopyOnWriteArrayList<>();
+        volatile boolean unwatched;
+        volatile boolean migrated;
+        volatile FsyncPolicy fsyncPolicy = BaseDao.DEFAULT_FSYNC_POLICY;
+
+        private Shared(Class<?> owner, Path path) {
+            this.owner = owner;
+            this.lock = new StoreLock(Paths.get(path + ".lock"));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.softwareengineering.finsage.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The single writer of one DAO file. save/update/delete calls from any thread are
+ * queued here and applied by one background thread; the caller blocks until its
+ * write is on disk. Writes that queue up while a batch is being written are drained
+ * together as the next batch, and each store touched by a batch is written once
+ * (one journal append or one snapshot rewrite) however many calls it holds.
+ *
+ * <p>In write-behind mode a write is acknowledged as soon as it is queued. Queued
+ * writes are applied as one batch when the oldest has waited the configured latency
+ * or the queue is full, whichever comes first; a caller finding the queue full waits
+ * for that batch. Reads of the file {@link #flush flush} first, so a thread always
+ * reads its own acknowledged writes, and a shutdown hook flushes every file on a
+ * clean exit.
+ */
+final class StoreWriter<T> {
+    private static volatile Thread writerThread;
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dao-writer");
+        thread.setDaemon(true);
+        writerThread = thread;
+        return thread;
+    });
+
+    /**
+     * One DAO write, run against the batch it was drained with.
+     */
+    interface Operation<T> {
+        boolean apply(BaseDao<T>.WriteBatch batch) throws IOException;
+    }
+
+    static final class Pending<T> {
+        final Operation<T> operation;
+        final Set<String> partitions = new HashSet<>();
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        boolean applied;
+
+        private Pending(Operation<T> operation) {
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * Write-behind settings; permits count the free queue slots.
+     */
+    private record Behind(int capacity, long maxLatencyMillis, Semaphore permits) {}
+
+    private final Queue<Pending<T>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean delayed = new AtomicBoolean();
+    private volatile Behind behind;
+    private volatile BaseDao<T> owner;
+
+    /**
+     * Sets the DAO whose hooks run the batches; the first instance of a file wins.
+     */
+    void bind(BaseDao<T> dao) {
+        if (owner == null) {
+            synchronized (this) {
+                if (owner == null) {
+                    owner = dao;
+                }
+            }
+        }
+    }
+
+    /**
+     * Switches to write-behind with room for {@code capacity} queued writes, each
+     * applied at most {@code maxLatencyMillis} after it was acknowledged.
+     */
+    void writeBehind(int capacity, long maxLatencyMillis) {
+        if (capacity <= 0 || maxLatencyMillis <= 0) {
+            throw new IllegalArgumentException("Write-behind needs a positive capacity and latency: "
+                    + capacity + ", " + maxLatencyMillis);
+        }
+        flush();
+        behind = new Behind(capacity, maxLatencyMillis, new Semaphore(capacity));
+    }
+
+    /**
+     * Back to waiting for every write, once the queued ones are applied.
+     */
+    void writeThrough() {
+        behind = null;
+        awaitWriter();
+    }
+
+    boolean isWriteBehind() {
+        return behind != null;
+    }
+
+    /**
+     * Queues the write and waits for it, or in write-behind mode only until it is
+     * queued. Called from the writer thread itself (a write made while another batch
+     * is being applied) it runs at once as its own batch.
+     */
+    boolean submit(Operation<T> operation) {
+        Pending<T> pending = new Pending<>(operation);
+        if (Thread.currentThread() == writerThread) {
+            run(List.of(pending));
+            return pending.result.join();
+        }
+        Behind mode = behind;
+        if (mode == null) {
+            queue.add(pending);
+            drainNow();
+            return pending.result.join();
+        }
+        if (!mode.permits().tryAcquire()) {
+            drainNow();
+            mode.permits().acquireUninterruptibly();
+        }
+        pending.result.whenComplete((succeeded, e) -> {
+            mode.permits().release();
+            if (!Boolean.TRUE.equals(succeeded)) {
+                System.err.println("A write-behind write to " + owner.getClass().getSimpleName() + " was not applied");
+            }
+        });
+        queue.add(pending);
+        if (delayed.compareAndSet(false, true)) {
+            WRITER.schedule(() -> {
+                delayed.set(false);
+                drain();
+            }, mode.maxLatencyMillis(), TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every write acknowledged so far is applied. A no-op in write-through
+     * mode and on the writer thread, where nothing can be waiting.
+     */
+    void flush() {
+        Behind mode = behind;
+        boolean waiting = mode != null && mode.permits().availablePermits() < mode.capacity();
+        if (waiting || !queue.isEmpty()) {
+            awaitWriter();
+        }
+    }
+
+    private void awaitWriter() {
+        if (Thread.currentThread() != writerThread) {
+            // The writer is one thread: once this drain has run, so has every batch before it.
+            CompletableFuture.runAsync(this::drain, WRITER).join();
+        }
+    }
+
+    private void drainNow() {
+        if (scheduled.compareAndSet(false, true)) {
+            WRITER.execute(() -> {
+                scheduled.set(false);
+                drain();
+            });
+        }
+    }
+
+    private void drain() {
+        List<Pending<T>> batch = new ArrayList<>();
+        for (Pending<T> pending; (pending = queue.poll()) != null; ) {
+            batch.add(pending);
+        }
+        if (!batch.isEmpty()) {
+            run(batch);
+        }
+    }
+
+    private void run(List<Pending<T>> batch) {
+        try {
+            owner.runBatch(batch);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            // Never leave a caller waiting, whatever went wrong.
+            for (Pending<T> pending : batch) {
+                pending.result.complete(false);
+            }
+        }
+    }
+}
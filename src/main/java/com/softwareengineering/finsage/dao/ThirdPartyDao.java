@@ -1,8 +1,6 @@
 package com.softwareengineering.finsage.dao;
 
 import com.softwareengineering.finsage.model.ThirdParty;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.util.List;
@@ -13,12 +11,21 @@ public class ThirdPartyDao extends BaseDao<ThirdParty> {
     private static final String[] HEADERS = {"id", "serviceName", "serviceUsername", "servicePassword", "userId"};
     private static final String CSV_FILE = "data/third_parties.csv";
 
+    private static final String BY_USER = "userId";
+    private static final String BY_USER_SERVICE = "userId+serviceName";
+    private static final String BY_USER_SERVICE_USERNAME = "userId+serviceUsername";
+    private static final String BY_SERVICE_ACCOUNT = "serviceName+serviceUsername";
+
     public ThirdPartyDao() {
         super(CSV_FILE, HEADERS);
+        addIndex(BY_USER, ThirdParty::getUserId);
+        addIndex(BY_USER_SERVICE, ThirdParty::getUserId, ignoreCase(ThirdParty::getServiceName));
+        addIndex(BY_USER_SERVICE_USERNAME, ThirdParty::getUserId, ThirdParty::getServiceUsername);
+        addIndex(BY_SERVICE_ACCOUNT, ignoreCase(ThirdParty::getServiceName), ThirdParty::getServiceUsername);
     }
 
     @Override
-    protected void printRecord(CSVPrinter printer, ThirdParty thirdParty) throws IOException {
+    protected void printRecord(CsvWriter printer, ThirdParty thirdParty) throws IOException {
         printer.printRecord(
                 thirdParty.getId(),
                 thirdParty.getServiceName(),
@@ -29,7 +36,7 @@ public class ThirdPartyDao extends BaseDao<ThirdParty> {
     }
 
     @Override
-    protected ThirdParty parseRecord(CSVRecord record) {
+    protected ThirdParty parseRecord(CsvRow record) {
         ThirdParty thirdParty = new ThirdParty();
         thirdParty.setId(record.get("id"));
         thirdParty.setServiceName(record.get("serviceName"));
@@ -44,14 +51,18 @@ public class ThirdPartyDao extends BaseDao<ThirdParty> {
         return thirdParty.getId();
     }
 
+    @Override
+    protected ThirdParty copy(ThirdParty thirdParty) {
+        return new ThirdParty(thirdParty.getId(), thirdParty.getServiceName(), thirdParty.getServiceUsername(),
+                thirdParty.getServicePassword(), thirdParty.getUserId());
+    }
+
     public List<ThirdParty> getByUserId(String userId) {
-        return findBy(t -> t.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId));
     }
 
     public Optional<ThirdParty> getByServiceNameAndUserId(String serviceName, String userId) {
-        return getAll().stream()
-                .filter(t -> t.getServiceName().equalsIgnoreCase(serviceName) && t.getUserId().equals(userId))
-                .findFirst();
+        return findFirst(indexed(BY_USER_SERVICE, userId, serviceName));
     }
 
     public boolean existsByServiceNameAndUserId(String serviceName, String userId) {
@@ -59,12 +70,14 @@ public class ThirdPartyDao extends BaseDao<ThirdParty> {
     }
 
     public List<ThirdParty> searchByServiceName(String serviceName, String userId) {
-        return findBy(t -> t.getServiceName().toLowerCase().contains(serviceName.toLowerCase()) && t.getUserId().equals(userId));
+        return findBy(indexed(BY_USER, userId).and(t -> t.getServiceName().toLowerCase().contains(serviceName.toLowerCase())));
     }
 
     public Optional<ThirdParty> getByServiceUsernameAndUserId(String serviceUsername, String userId) {
-        return getAll().stream()
-                .filter(t -> t.getServiceUsername().equals(serviceUsername) && t.getUserId().equals(userId))
-                .findFirst();
+        return findFirst(indexed(BY_USER_SERVICE_USERNAME, userId, serviceUsername));
+    }
+
+    public List<ThirdParty> getByServiceNameAndServiceUsername(String serviceName, String serviceUsername) {
+        return findBy(indexed(BY_SERVICE_ACCOUNT, serviceName, serviceUsername));
     }
 }
@@ -0,0 +1,219 @@
+package com.softwareengineering.finsage.dao;
+
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary, column-per-field snapshot of a transaction segment, read through a
+ * memory mapping. Layout (big-endian):
+ *
+ * <pre>
+ * int magic, int version, int rows, int amountScale
+ * int dictionarySize, then per entry: int byteLength, UTF-8 bytes
+ * int[rows]     epochDay
+ * long[rows]    amount, unscaled at amountScale
+ * int[rows]     categoryId (dictionary reference, -1 for null)
+ * int[rows]     userId (dictionary reference, -1 for null)
+ * int[rows + 1] id offsets into the id heap
+ * int[rows + 1] note offsets into the note heap
+ * id heap, note heap (UTF-8)
+ * </pre>
+ *
+ * {@link #toTransactions} decodes every row. Date-range totals do not read this file:
+ * they come from the running totals in {@link TransactionTotals}.
+ */
+final class TransactionColumns {
+    static final String SUFFIX = ".col";
+
+    private static final int MAGIC = 0x46535443; // "FSTC"
+    private static final int VERSION = 1;
+
+    private final MappedByteBuffer buffer;
+    private final int rows;
+    private final int scale;
+    private final String[] dictionary;
+    private final int dayColumn;
+    private final int amountColumn;
+    private final int categoryColumn;
+    private final int userColumn;
+    private final int idOffsets;
+    private final int noteOffsets;
+    private final int idHeap;
+    private final int noteHeap;
+
+    private TransactionColumns(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a transaction column file");
+        }
+        rows = buffer.getInt(8);
+        scale = buffer.getInt(12);
+        int position = 16;
+        dictionary = new String[buffer.getInt(position)];
+        position += 4;
+        for (int i = 0; i < dictionary.length; i++) {
+            int length = buffer.getInt(position);
+            dictionary[i] = string(position + 4, length);
+            position += 4 + length;
+        }
+        dayColumn = position;
+        amountColumn = dayColumn + 4 * rows;
+        categoryColumn = amountColumn + 8 * rows;
+        userColumn = categoryColumn + 4 * rows;
+        idOffsets = userColumn + 4 * rows;
+        noteOffsets = idOffsets + 4 * (rows + 1);
+        idHeap = noteOffsets + 4 * (rows + 1);
+        noteHeap = idHeap + buffer.getInt(idOffsets + 4 * rows);
+    }
+
+    static TransactionColumns map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new TransactionColumns(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static List<Transaction> read(Path file) throws IOException {
+        return map(file).toTransactions();
+    }
+
+    /**
+     * Writes the segment, or fails with an {@link IOException} before touching the file
+     * if an amount cannot be held as a long at the segment's largest scale.
+     */
+    static void write(Path file, List<Transaction> transactions) throws IOException {
+        int rows = transactions.size();
+        int scale = 0;
+        for (Transaction transaction : transactions) {
+            scale = Math.max(scale, transaction.getAmount().scale());
+        }
+        long[] amounts = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            Transaction transaction = transactions.get(i);
+            try {
+                // Exact: scale is the largest scale in the segment.
+                amounts[i] = transaction.getAmount().setScale(scale).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                throw new IOException("Amount " + transaction.getAmount() + " of transaction "
+                        + transaction.getId() + " does not fit a column file at scale " + scale, e);
+            }
+        }
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        byte[][] ids = new byte[rows][];
+        byte[][] notes = new byte[rows][];
+        for (int i = 0; i < rows; i++) {
+            Transaction transaction = transactions.get(i);
+            reference(dictionary, transaction.getCategoryId());
+            reference(dictionary, transaction.getUserId());
+            ids[i] = bytes(transaction.getId());
+            notes[i] = bytes(transaction.getNote());
+        }
+
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(scale);
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                byte[] encoded = bytes(value);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            for (Transaction transaction : transactions) {
+                out.writeInt((int) transaction.getDate().toEpochDay());
+            }
+            for (long amount : amounts) {
+                out.writeLong(amount);
+            }
+            for (Transaction transaction : transactions) {
+                out.writeInt(reference(dictionary, transaction.getCategoryId()));
+            }
+            for (Transaction transaction : transactions) {
+                out.writeInt(reference(dictionary, transaction.getUserId()));
+            }
+            writeOffsets(out, ids);
+            writeOffsets(out, notes);
+            for (byte[] id : ids) {
+                out.write(id);
+            }
+            for (byte[] note : notes) {
+                out.write(note);
+            }
+        }
+    }
+
+    int size() {
+        return rows;
+    }
+
+    List<Transaction> toTransactions() {
+        List<Transaction> transactions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            transactions.add(row(i));
+        }
+        return transactions;
+    }
+
+    Transaction row(int i) {
+        return new Transaction(
+                heapString(idHeap, idOffsets, i),
+                BigDecimal.valueOf(buffer.getLong(amountColumn + 8 * i), scale),
+                LocalDate.ofEpochDay(buffer.getInt(dayColumn + 4 * i)),
+                dictionaryValue(buffer.getInt(categoryColumn + 4 * i)),
+                heapString(noteHeap, noteOffsets, i),
+                dictionaryValue(buffer.getInt(userColumn + 4 * i)));
+    }
+
+    private String dictionaryValue(int reference) {
+        return reference < 0 ? null : dictionary[reference];
+    }
+
+    private String heapString(int heap, int offsets, int row) {
+        int start = buffer.getInt(offsets + 4 * row);
+        int end = buffer.getInt(offsets + 4 * (row + 1));
+        return string(heap + start, end - start);
+    }
+
+    private String string(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int reference(Map<String, Integer> dictionary, String value) {
+        if (value == null) {
+            return -1;
+        }
+        return dictionary.computeIfAbsent(value, v -> dictionary.size());
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeOffsets(DataOutputStream out, byte[][] values) throws IOException {
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] value : values) {
+            offset += value.length;
+            out.writeInt(offset);
+        }
+    }
+}
@@ -1,30 +1,93 @@
 package com.softwareengineering.finsage.dao;
 
+import com.softwareengineering.finsage.dao.TransactionQuery.Sort;
+import com.softwareengineering.finsage.model.Money;
 import com.softwareengineering.finsage.model.Transaction;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 public class TransactionDao extends BaseDao<Transaction> {
     private static final String[] HEADERS = {"id", "amount", "date", "categoryId", "note", "userId"};
     private static final String CSV_FILE = "data/transactions.csv";
+    private static final String PARTITION_DIRECTORY = "data/transactions";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final String BY_CATEGORY = "categoryId";
+    private static final String BY_DATE = "date";
 
     public TransactionDao() {
-        super(CSV_FILE, HEADERS);
+        super(CSV_FILE, HEADERS, true, PARTITION_DIRECTORY);
+        addIndex(BY_CATEGORY, Transaction::getCategoryId);
+        addRangeIndex(BY_DATE, t -> t.getDate().toEpochDay());
     }
 
+    /**
+     * One directory per user and one segment file per month, so per-user queries only
+     * read that user's transactions and an edit only touches its month's file.
+     */
     @Override
-    protected void printRecord(CSVPrinter printer, Transaction transaction) throws IOException {
+    protected String partitionOf(Transaction transaction) {
+        return transaction.getUserId() + "/" + YearMonth.from(transaction.getDate());
+    }
+
+    /**
+     * The user's {@link TransactionRollup} file sits beside the month segments but is
+     * not one.
+     */
+    @Override
+    protected boolean isPartitionKey(String key) {
+        return !key.endsWith("/" + TransactionRollup.NAME);
+    }
+
+    @Override
+    protected String rangeKeyOf(Transaction transaction) {
+        return transaction.getDate().format(DATE_FORMATTER);
+    }
+
+    @Override
+    protected String partitionLayout() {
+        return "userId/month;columnar";
+    }
+
+    /**
+     * Segment snapshots are {@link TransactionColumns} files; the journal stays CSV and
+     * CSV remains the import/export format ({@link #exportToCsv}).
+     */
+    @Override
+    protected String snapshotSuffix() {
+        return TransactionColumns.SUFFIX;
+    }
+
+    @Override
+    protected List<Transaction> readBinarySnapshot(Path path) throws IOException {
+        return TransactionColumns.read(path);
+    }
+
+    @Override
+    protected Cursor<Transaction> openBinarySnapshot(Path path) throws IOException {
+        TransactionColumns columns = TransactionColumns.map(path);
+        return Cursor.of(IntStream.range(0, columns.size()).mapToObj(columns::row).iterator());
+    }
+
+    @Override
+    protected void writeBinarySnapshot(Path path, List<Transaction> transactions) throws IOException {
+        TransactionColumns.write(path, transactions);
+    }
+
+    @Override
+    protected void printRecord(CsvWriter printer, Transaction transaction) throws IOException {
         printer.printRecord(
                 transaction.getId(),
                 transaction.getAmount(),
@@ -36,11 +99,11 @@ public class TransactionDao extends BaseDao<Transaction> {
     }
 
     @Override
-    protected Transaction parseRecord(CSVRecord record) {
+    protected Transaction parseRecord(CsvRow record) {
         Transaction transaction = new Transaction();
         transaction.setId(record.get("id"));
-        transaction.setAmount(new BigDecimal(record.get("amount")));
-        transaction.setDate(LocalDate.parse(record.get("date"), DATE_FORMATTER));
+        transaction.setAmount(record.getDecimal("amount"));
+        transaction.setDate(record.getLocalDate("date"));
         transaction.setCategoryId(record.get("categoryId"));
         transaction.setNote(record.get("note"));
         transaction.setUserId(record.get("userId"));
@@ -52,59 +115,152 @@ public class TransactionDao extends BaseDao<Transaction> {
         return transaction.getId();
     }
 
+    @Override
+    protected Transaction copy(Transaction transaction) {
+        return new Transaction(transaction.getId(), transaction.getAmount(), transaction.getDate(),
+                transaction.getCategoryId(), transaction.getNote(), transaction.getUserId());
+    }
+
+    /**
+     * Runs a query. Only the user's month segments overlapping the date range are read.
+     * Within a segment the planner takes the cheapest of a scan, one category index
+     * probe per requested category and a binary-searched slice of the date index,
+     * comparing the segment size with each index's match count; every other condition
+     * is checked on the rows that path returns. A limit
+     * stops the scan early: unsorted and date-sorted queries stop after the segment
+     * that fills it (months are visited in sort order), and amount-sorted queries keep
+     * only the best {@code limit} rows in a heap instead of sorting every match.
+     */
+    public List<Transaction> find(TransactionQuery query) {
+        int limit = query.getLimit();
+        Sort sort = query.getSort();
+        Comparator<Transaction> order = sort.comparator();
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        if (query.getUserId() == null) {
+            List<Transaction> all = findBy(query);
+            if (order != null) {
+                all.sort(order);
+            }
+            return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+        }
+        List<String> months = new ArrayList<>(segmentsOf(query.getUserId(),
+                query.getFrom() != null ? query.getFrom().format(DATE_FORMATTER) : null,
+                query.getTo() != null ? query.getTo().format(DATE_FORMATTER) : null));
+        if (sort == Sort.DATE_DESC) {
+            Collections.reverse(months);
+        }
+        boolean monthOrdered = sort == Sort.NONE || sort == Sort.DATE_ASC || sort == Sort.DATE_DESC;
+        PriorityQueue<Transaction> best = !monthOrdered && limit < Integer.MAX_VALUE
+                ? new PriorityQueue<>(order.reversed()) : null;
+        List<Transaction> result = new ArrayList<>();
+        for (String month : months) {
+            String partition = query.getUserId() + "/" + month;
+            List<Transaction> matches = findInSegment(partition, query,
+                    sort == Sort.NONE ? limit - result.size() : Integer.MAX_VALUE);
+            if (best != null) {
+                for (Transaction t : matches) {
+                    best.add(t);
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+                continue;
+            }
+            if (monthOrdered && order != null) {
+                matches.sort(order);
+            }
+            result.addAll(matches);
+            if (monthOrdered && result.size() >= limit) {
+                break;
+            }
+        }
+        if (best != null) {
+            result.addAll(best);
+        }
+        if (!monthOrdered) {
+            result.sort(order);
+        }
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Up to {@code limit} matches of the query in one segment, through whichever access
+     * path reads the fewest rows, with the query as the residual filter.
+     */
+    private List<Transaction> findInSegment(String partition, TransactionQuery query, int limit) {
+        long scanned = sizeOf(partition);
+        long probed = Long.MAX_VALUE;
+        Set<String> categories = query.getCategoryIds();
+        if (categories != null) {
+            probed = 0;
+            for (String categoryId : categories) {
+                probed += estimateIndexed(partition, BY_CATEGORY, categoryId);
+            }
+        }
+        long sliced = Long.MAX_VALUE;
+        long from = query.getFrom() != null ? query.getFrom().toEpochDay() : Long.MIN_VALUE;
+        long to = query.getTo() != null ? query.getTo().toEpochDay() : Long.MAX_VALUE;
+        if (query.getFrom() != null || query.getTo() != null) {
+            sliced = estimateRange(partition, BY_DATE, from, to);
+        }
+        if (sliced < scanned && sliced <= probed) {
+            return findInRange(partition, BY_DATE, from, to, query, limit);
+        }
+        if (probed < scanned) {
+            List<Transaction> matches = new ArrayList<>();
+            for (String categoryId : categories) {
+                matches.addAll(findInPartition(partition, indexed(BY_CATEGORY, categoryId).and(query),
+                        limit - matches.size()));
+            }
+            return matches;
+        }
+        return findInPartition(partition, query, limit);
+    }
+
     // 基本查询方法
     public List<Transaction> getByUserId(String userId) {
-        return findBy(t -> t.getUserId().equals(userId));
+        return find(TransactionQuery.forUser(userId));
     }
 
     public List<Transaction> getByUserIdAndDateRange(String userId, LocalDate start, LocalDate end) {
-        return getByUserId(userId).stream()
-                .filter(t -> !t.getDate().isBefore(start) && !t.getDate().isAfter(end))
-                .collect(Collectors.toList());
+        return find(TransactionQuery.forUser(userId).between(start, end));
     }
 
     public List<Transaction> getByCategoryId(String categoryId, String userId) {
-        return findBy(t -> t.getCategoryId().equals(categoryId) && t.getUserId().equals(userId));
+        return find(TransactionQuery.forUser(userId).category(categoryId));
     }
 
     // 金额相关查询方法
     public List<Transaction> getByAmountGreaterThan(BigDecimal amount, String userId) {
-        return findBy(t -> t.getAmount().compareTo(amount) > 0 && t.getUserId().equals(userId));
+        return find(TransactionQuery.forUser(userId).amountAbove(amount));
     }
 
     public List<Transaction> getByAmountLessThan(BigDecimal amount, String userId) {
-        return findBy(t -> t.getAmount().compareTo(amount) < 0 && t.getUserId().equals(userId));
+        return find(TransactionQuery.forUser(userId).amountBelow(amount));
     }
 
     public List<Transaction> getByAmountBetween(BigDecimal min, BigDecimal max, String userId) {
-        return findBy(t -> t.getAmount().compareTo(min) >= 0 &&
-                t.getAmount().compareTo(max) <= 0 &&
-                t.getUserId().equals(userId));
+        return find(TransactionQuery.forUser(userId).amountBetween(min, max));
     }
 
     // 文本搜索方法
     public List<Transaction> searchByNote(String keyword, String userId) {
-        return findBy(t -> t.getNote().toLowerCase().contains(keyword.toLowerCase()) &&
-                t.getUserId().equals(userId));
+        return find(TransactionQuery.forUser(userId).noteContains(keyword));
     }
 
     // 统计方法
     public BigDecimal getTotalAmountByUserId(String userId) {
-        return getByUserId(userId).stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sum(userId, null, null, null, false);
     }
 
     public BigDecimal getTotalAmountByCategoryId(String categoryId, String userId) {
-        return getByCategoryId(categoryId, userId).stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sum(userId, null, null, categoryId, false);
     }
 
     public BigDecimal getTotalAmountByDateRange(LocalDate start, LocalDate end, String userId) {
-        return getByUserIdAndDateRange(userId, start, end).stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sum(userId, start, end, null, false);
     }
 
     public long countByUserId(String userId) {
@@ -117,35 +273,142 @@ public class TransactionDao extends BaseDao<Transaction> {
 
     // 预算功能专用方法
     public List<Transaction> getByMonthAndUserId(YearMonth month, String userId) {
-        LocalDate start = month.atDay(1);
-        LocalDate end = month.atEndOfMonth();
-        return getByUserIdAndDateRange(userId, start, end);
+        return find(TransactionQuery.forUser(userId).between(month.atDay(1), month.atEndOfMonth()));
     }
 
     public List<Transaction> getByMonthCategoryAndUserId(YearMonth month, String categoryId, String userId) {
-        return getByMonthAndUserId(month, userId).stream()
-                .filter(t -> t.getCategoryId().equals(categoryId))
-                .collect(Collectors.toList());
+        return find(TransactionQuery.forUser(userId).category(categoryId)
+                .between(month.atDay(1), month.atEndOfMonth()));
     }
 
     public BigDecimal getTotalAmountByCategoryIdAndDateRange(String categoryId, LocalDate start, LocalDate end, String userId) {
-        return getByUserId(userId).stream()
-                .filter(t -> t.getCategoryId().equals(categoryId))
-                .filter(t -> !t.getDate().isBefore(start) && !t.getDate().isAfter(end))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sum(userId, start, end, categoryId, false);
     }
 
     public BigDecimal getNetExpenseByDateRange(LocalDate start, LocalDate end, String userId) {
-        return getByUserId(userId).stream()
-                .filter(t -> !t.getDate().isBefore(start) && !t.getDate().isAfter(end))
-                .map(t -> {
-                    if (t.getAmount().compareTo(BigDecimal.ZERO) < 0) {
-                        return t.getAmount().abs();
-                    }
-                    return BigDecimal.ZERO;
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sum(userId, start, end, null, true);
+    }
+
+    public BigDecimal getNetExpenseByCategoryIdAndDateRange(String categoryId, LocalDate start, LocalDate end, String userId) {
+        return sum(userId, start, end, categoryId, true);
     }
 
+    // 月度汇总
+    /**
+     * The user's rollup cells for months in [from, to] (null bounds are open), in month
+     * order: one cell per month, category and side of zero, read from the materialized
+     * rollup instead of the transactions.
+     */
+    public List<RollupCell> getRollup(String userId, YearMonth from, YearMonth to) {
+        return rollup().cells(userId, from, to);
+    }
+
+    /**
+     * Rollup total of one month or all months (null), one category or all (null), as a
+     * magnitude: the expenses' if {@code expense}, the income's otherwise.
+     */
+    public BigDecimal getRollupTotal(String userId, YearMonth month, String categoryId, boolean expense) {
+        long cents = 0;
+        for (RollupCell cell : getRollup(userId, month, month)) {
+            if (cell.expense() == expense && (categoryId == null || categoryId.equals(cell.categoryId()))) {
+                cents = Money.add(cents, cell.cents());
+            }
+        }
+        return Money.toBigDecimal(cents);
+    }
+
+    /**
+     * Recomputes the user's rollup from the transactions, discarding the persisted one.
+     */
+    public void rebuildRollup(String userId) {
+        rollup().rebuild(userId);
+    }
+
+    /**
+     * The user's {@code k} largest expenses or incomes of one month, or of all months
+     * (null), largest first. Up to {@link TransactionTopK#CAPACITY} they come from the
+     * per-month top lists kept by {@link #changed}; beyond that, from a query.
+     */
+    public List<Transaction> getTopTransactions(String userId, YearMonth month, boolean expense, int k) {
+        if (k > TransactionTopK.CAPACITY) {
+            TransactionQuery query = TransactionQuery.forUser(userId)
+                    .type(expense ? TransactionQuery.Type.EXPENSE : TransactionQuery.Type.INCOME)
+                    .sortBy(expense ? Sort.AMOUNT_ASC : Sort.AMOUNT_DESC)
+                    .limit(k);
+            return find(month == null ? query : query.between(month.atDay(1), month.atEndOfMonth()));
+        }
+        List<YearMonth> months = new ArrayList<>();
+        for (String segment : segmentsOf(userId,
+                month != null ? month.atDay(1).format(DATE_FORMATTER) : null,
+                month != null ? month.atEndOfMonth().format(DATE_FORMATTER) : null)) {
+            months.add(YearMonth.parse(segment));
+        }
+        TransactionTopK topK = topK();
+        long reloads = getReloadCount();
+        List<Transaction> top = topK.top(userId, reloads, months, expense, k);
+        if (top == null) {
+            top = readConsistently(() -> {
+                for (YearMonth missing : topK.missing(userId, reloads, months, expense, k)) {
+                    topK.load(userId, reloads, missing, findInPartition(userId + "/" + missing, null));
+                }
+                return topK.top(userId, reloads, months, expense, k);
+            });
+        }
+        List<Transaction> result = new ArrayList<>(top.size());
+        for (Transaction t : top) {
+            result.add(copy(t));
+        }
+        return result;
+    }
+
+    // 导出
+    public boolean exportToCsv(String userId, Path file) {
+        try {
+            writeAllRecords(file, getByUserId(userId));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Sums a user's amounts in [start, end] (null bounds are open), optionally for one
+     * category, or only the expense magnitudes, from the user's running totals: two
+     * prefix-sum lookups rather than a pass over the transactions. The totals are built
+     * by the first call for a user and kept current by {@link #changed}.
+     */
+    private BigDecimal sum(String userId, LocalDate start, LocalDate end, String categoryId, boolean expensesOnly) {
+        long from = start != null ? start.toEpochDay() : Long.MIN_VALUE;
+        long to = end != null ? end.toEpochDay() : Long.MAX_VALUE;
+        TransactionTotals totals = totals();
+        long reloads = getReloadCount();
+        Long cents = totals.sum(userId, reloads, from, to, categoryId, expensesOnly);
+        if (cents == null) {
+            cents = readConsistently(() -> {
+                totals.build(userId, reloads, getByUserId(userId));
+                return totals.sum(userId, reloads, from, to, categoryId, expensesOnly);
+            });
+        }
+        return Money.toBigDecimal(cents);
+    }
+
+    @Override
+    protected void changed(Transaction before, Transaction after) {
+        totals().changed(before, after);
+        rollup().changed(before, after);
+        topK().changed(before, after);
+    }
+
+    private TransactionTopK topK() {
+        return attachment(TransactionTopK.class, TransactionTopK::new);
+    }
+
+    private TransactionRollup rollup() {
+        return attachment(TransactionRollup.class, () -> new TransactionRollup(this));
+    }
+
+    private TransactionTotals totals() {
+        return attachment(TransactionTotals.class, TransactionTotals::new);
+    }
 }
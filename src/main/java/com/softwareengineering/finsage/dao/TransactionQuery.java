@@ -0,0 +1,234 @@
+package com.softwareengineering.finsage.dao;
+
+import com.softwareengineering.finsage.model.Money;
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Conditions on transactions, run by {@link TransactionDao#find}. Every setter returns
+ * the query, and a null argument leaves that condition open, so UI filters can be
+ * passed straight through:
+ *
+ * <pre>{@code
+ * transactionDao.find(TransactionQuery.forUser(userId)
+ *         .expenses()
+ *         .between(start, end)
+ *         .sortBy(TransactionQuery.Sort.AMOUNT_DESC)
+ *         .limit(10));
+ * }</pre>
+ *
+ * Amounts are compared in cents. Income includes zero amounts, as do expenses.
+ */
+public final class TransactionQuery implements Predicate<Transaction> {
+    public enum Type {ALL, INCOME, EXPENSE}
+
+    public enum Sort {
+        /**
+         * Month by month; within a month in the order of the access path the planner
+         * picked (file order for a scan, date order for a date-index slice).
+         */
+        NONE(null),
+        DATE_ASC(Comparator.comparing(Transaction::getDate)),
+        DATE_DESC(Comparator.comparing(Transaction::getDate).reversed()),
+        AMOUNT_ASC(Comparator.comparingLong(Transaction::getAmountCents)),
+        AMOUNT_DESC(Comparator.comparingLong(Transaction::getAmountCents).reversed());
+
+        private final Comparator<Transaction> comparator;
+
+        Sort(Comparator<Transaction> comparator) {
+            this.comparator = comparator;
+        }
+
+        Comparator<Transaction> comparator() {
+            return comparator;
+        }
+    }
+
+    private final String userId;
+    private Type type = Type.ALL;
+    private Set<String> categoryIds;
+    private LocalDate from;
+    private LocalDate to;
+    private Long minCents;
+    private Long maxCents;
+    private String noteText;
+    private Sort sort = Sort.NONE;
+    private int limit = Integer.MAX_VALUE;
+
+    private TransactionQuery(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * A query over one user's transactions; null queries every user's.
+     */
+    public static TransactionQuery forUser(String userId) {
+        return new TransactionQuery(userId);
+    }
+
+    public TransactionQuery type(Type type) {
+        this.type = type != null ? type : Type.ALL;
+        return this;
+    }
+
+    /**
+     * "INCOME" or "EXPENSE" as used by the view filters; anything else means both.
+     */
+    public TransactionQuery type(String type) {
+        return type("INCOME".equals(type) ? Type.INCOME : "EXPENSE".equals(type) ? Type.EXPENSE : Type.ALL);
+    }
+
+    public TransactionQuery income() {
+        return type(Type.INCOME);
+    }
+
+    public TransactionQuery expenses() {
+        return type(Type.EXPENSE);
+    }
+
+    public TransactionQuery category(String categoryId) {
+        return categories(categoryId != null ? Set.of(categoryId) : null);
+    }
+
+    /**
+     * Transactions in any of the given categories.
+     */
+    public TransactionQuery categories(Collection<String> categoryIds) {
+        this.categoryIds = categoryIds != null ? new LinkedHashSet<>(categoryIds) : null;
+        return this;
+    }
+
+    /**
+     * Transactions dated from {@code from} to {@code to}, both inclusive.
+     */
+    public TransactionQuery between(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * Amounts from {@code min} to {@code max}, both inclusive; replaces any other bounds.
+     */
+    public TransactionQuery amountBetween(BigDecimal min, BigDecimal max) {
+        this.minCents = min != null ? cents(min, RoundingMode.CEILING) : null;
+        this.maxCents = max != null ? cents(max, RoundingMode.FLOOR) : null;
+        return this;
+    }
+
+    /**
+     * Amounts strictly greater than {@code amount}.
+     */
+    public TransactionQuery amountAbove(BigDecimal amount) {
+        this.minCents = amount != null ? above(cents(amount, RoundingMode.FLOOR)) : null;
+        return this;
+    }
+
+    /**
+     * Amounts strictly less than {@code amount}.
+     */
+    public TransactionQuery amountBelow(BigDecimal amount) {
+        this.maxCents = amount != null ? below(cents(amount, RoundingMode.CEILING)) : null;
+        return this;
+    }
+
+    /**
+     * Transactions whose note contains {@code text}, ignoring case.
+     */
+    public TransactionQuery noteContains(String text) {
+        this.noteText = text != null ? text.toLowerCase() : null;
+        return this;
+    }
+
+    public TransactionQuery sortBy(Sort sort) {
+        this.sort = sort != null ? sort : Sort.NONE;
+        return this;
+    }
+
+    /**
+     * At most {@code limit} transactions: the first ones in {@link #sortBy sort} order.
+     */
+    public TransactionQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * True if the transaction meets every condition; user included.
+     */
+    @Override
+    public boolean test(Transaction t) {
+        if (userId != null && !userId.equals(t.getUserId())) {
+            return false;
+        }
+        return matchesResidual(t) && (categoryIds == null || categoryIds.contains(t.getCategoryId()))
+                && (from == null || !t.getDate().isBefore(from)) && (to == null || !t.getDate().isAfter(to));
+    }
+
+    private boolean matchesResidual(Transaction t) {
+        long cents = t.getAmountCents();
+        if (type == Type.INCOME && cents < 0 || type == Type.EXPENSE && cents > 0) {
+            return false;
+        }
+        if (minCents != null && cents < minCents || maxCents != null && cents > maxCents) {
+            return false;
+        }
+        return noteText == null || t.getNote() != null && t.getNote().toLowerCase().contains(noteText);
+    }
+
+    /**
+     * The bound in cents. A bound beyond the range of a long (1e30 typed into a filter)
+     * is clamped to the nearest end, which every stored amount lies within.
+     */
+    private static long cents(BigDecimal amount, RoundingMode rounding) {
+        BigInteger cents = amount.setScale(Money.SCALE, rounding).unscaledValue();
+        if (cents.bitLength() > 63) {
+            return cents.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return cents.longValue();
+    }
+
+    private static long above(long cents) {
+        return cents == Long.MAX_VALUE ? cents : cents + 1;
+    }
+
+    private static long below(long cents) {
+        return cents == Long.MIN_VALUE ? cents : cents - 1;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    Set<String> getCategoryIds() {
+        return categoryIds;
+    }
+
+    LocalDate getFrom() {
+        return from;
+    }
+
+    LocalDate getTo() {
+        return to;
+    }
+
+    Sort getSort() {
+        return sort;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,270 @@
+package com.softwareengineering.finsage.dao;
+
+import com.softwareengineering.finsage.model.Money;
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Materialized totals of each user's transactions by month, category and side of
+ * zero (see {@link RollupCell}), kept in memory and persisted per user as
+ * {@value #FILE_NAME} in the user's segment directory.
+ *
+ * <p>Each persisted month carries the stamp of its segment files at the time it was
+ * written. Loading a user keeps the months whose segment still has that stamp and
+ * recomputes the others from their segment, so a rollup file left behind by a crash,
+ * an older version or another process only costs re-reading the months it got wrong.
+ * After loading, the cells follow every change the DAO commits; they are written
+ * back a second after the last change and on a clean exit.
+ */
+final class TransactionRollup implements Flushable {
+    static final String NAME = "rollup";
+    static final String FILE_NAME = NAME + ".csv";
+    private static final String[] HEADERS = {"month", "stamp", "categoryId", "side", "cents", "count"};
+    private static final String EXPENSE = "expense";
+    private static final String INCOME = "income";
+    private static final long PERSIST_DELAY_MILLIS = 1000;
+
+    private static final ScheduledExecutorService PERSISTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dao-rollup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Key(String categoryId, boolean expense) {}
+
+    private final TransactionDao dao;
+    private final Map<String, TreeMap<YearMonth, Map<Key, long[]>>> users = new HashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+    private long reloads = -1;
+    private boolean scheduled;
+
+    TransactionRollup(TransactionDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * The user's cells for months in [from, to] (null bounds are open), in month order.
+     */
+    List<RollupCell> cells(String userId, YearMonth from, YearMonth to) {
+        long reloadCount = dao.getReloadCount();
+        synchronized (this) {
+            if (reloadCount == reloads && users.containsKey(userId)) {
+                return collect(userId, from, to);
+            }
+        }
+        return dao.readConsistently(() -> {
+            synchronized (this) {
+                load(userId, reloadCount, false);
+                return collect(userId, from, to);
+            }
+        });
+    }
+
+    /**
+     * Recomputes every month of the user from the segments, ignoring the persisted file.
+     */
+    void rebuild(String userId) {
+        long reloadCount = dao.getReloadCount();
+        dao.readConsistently(() -> {
+            synchronized (this) {
+                load(userId, reloadCount, true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Applies one committed change (null for absent) to the users loaded so far.
+     */
+    synchronized void changed(Transaction before, Transaction after) {
+        if (before != null) {
+            add(before, -1);
+        }
+        if (after != null) {
+            add(after, 1);
+        }
+    }
+
+    /**
+     * Writes the rollup files of users changed since the last write.
+     */
+    @Override
+    public void flush() {
+        synchronized (this) {
+            scheduled = false;
+            if (dirty.isEmpty()) {
+                return;
+            }
+        }
+        try {
+            // Blocks writers here and in other processes, so the stamps read below
+            // describe exactly the records the cells were computed from.
+            dao.lockedAgainstWriters(() -> {
+                long reloadCount = dao.getReloadCount();
+                synchronized (this) {
+                    if (reloadCount != reloads) {
+                        // Records changed behind our back: reload on next use instead.
+                        users.clear();
+                        dirty.clear();
+                        return null;
+                    }
+                    for (String userId : dirty) {
+                        TreeMap<YearMonth, Map<Key, long[]>> months = users.get(userId);
+                        if (months != null) {
+                            write(userId, months);
+                        }
+                    }
+                    dirty.clear();
+                }
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void load(String userId, long reloadCount, boolean rebuild) {
+        if (reloadCount != reloads) {
+            users.clear();
+            dirty.clear();
+            reloads = reloadCount;
+        }
+        Map<YearMonth, String> stamps = new HashMap<>();
+        Map<YearMonth, Map<Key, long[]>> persisted = rebuild ? Map.of() : read(userId, stamps);
+        TreeMap<YearMonth, Map<Key, long[]>> months = new TreeMap<>();
+        boolean recomputed = false;
+        for (String segment : dao.segmentsOf(userId, null, null)) {
+            YearMonth month = YearMonth.parse(segment);
+            String partition = userId + "/" + segment;
+            Map<Key, long[]> cells = persisted.get(month);
+            if (cells == null || !stamps.get(month).equals(dao.stampOf(partition))) {
+                cells = new HashMap<>();
+                for (Transaction t : dao.findInPartition(partition, null)) {
+                    add(cells, t, 1);
+                }
+                recomputed = true;
+            }
+            months.put(month, cells);
+        }
+        users.put(userId, months);
+        if (recomputed || persisted.size() != months.size()) {
+            markDirty(userId);
+        }
+    }
+
+    private Map<YearMonth, Map<Key, long[]>> read(String userId, Map<YearMonth, String> stamps) {
+        Map<YearMonth, Map<Key, long[]>> months = new HashMap<>();
+        Path file = dao.groupDirectory(userId).resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return months;
+        }
+        try (CsvReader reader = CsvReader.open(file)) {
+            CsvRow record = reader.row();
+            while (reader.next()) {
+                YearMonth month = YearMonth.parse(record.get("month"));
+                Map<Key, long[]> cells = months.computeIfAbsent(month, k -> new HashMap<>());
+                stamps.put(month, record.get("stamp"));
+                String side = record.get("side");
+                if (!side.isEmpty()) {
+                    cells.put(new Key(record.get("categoryId"), EXPENSE.equals(side)),
+                            new long[]{Long.parseLong(record.get("cents")), Long.parseLong(record.get("count"))});
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable: recompute every month.
+            e.printStackTrace();
+            months.clear();
+        }
+        return months;
+    }
+
+    /**
+     * One marker row per month carrying the segment stamp, then the month's cells.
+     */
+    private void write(String userId, TreeMap<YearMonth, Map<Key, long[]>> months) {
+        Path file = dao.groupDirectory(userId).resolve(FILE_NAME);
+        Path temp = Paths.get(file + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (CsvWriter printer = CsvWriter.create(temp, HEADERS)) {
+                for (Map.Entry<YearMonth, Map<Key, long[]>> month : months.entrySet()) {
+                    String stamp = dao.stampOf(userId + "/" + month.getKey());
+                    printer.printRecord(month.getKey(), stamp, "", "", 0, 0);
+                    for (Map.Entry<Key, long[]> cell : month.getValue().entrySet()) {
+                        Key key = cell.getKey();
+                        printer.printRecord(month.getKey(), stamp, key.categoryId(), key.expense() ? EXPENSE : INCOME,
+                                cell.getValue()[0], cell.getValue()[1]);
+                    }
+                }
+            }
+            dao.getFsyncPolicy().publish(temp, file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private List<RollupCell> collect(String userId, YearMonth from, YearMonth to) {
+        TreeMap<YearMonth, Map<Key, long[]>> months = users.get(userId);
+        List<RollupCell> result = new ArrayList<>();
+        Map<YearMonth, Map<Key, long[]>> window = from == null && to == null ? months
+                : from == null ? months.headMap(to, true)
+                : to == null ? months.tailMap(from, true)
+                : months.subMap(from, true, to, true);
+        window.forEach((month, cells) -> cells.forEach((key, cell) ->
+                result.add(new RollupCell(month, key.categoryId(), key.expense(), cell[0], cell[1]))));
+        return result;
+    }
+
+    private void add(Transaction t, int sign) {
+        TreeMap<YearMonth, Map<Key, long[]>> months = users.get(t.getUserId());
+        if (months == null) {
+            return;
+        }
+        add(months.computeIfAbsent(YearMonth.from(t.getDate()), k -> new HashMap<>()), t, sign);
+        markDirty(t.getUserId());
+    }
+
+    private static void add(Map<Key, long[]> cells, Transaction t, int sign) {
+        long cents = t.getAmountCents();
+        if (cents == 0) {
+            return;
+        }
+        Key key = new Key(t.getCategoryId() != null ? t.getCategoryId() : "", cents < 0);
+        long[] cell = cells.computeIfAbsent(key, k -> new long[2]);
+        cell[0] = Money.add(cell[0], sign * Money.abs(cents));
+        cell[1] += sign;
+        if (cell[1] == 0) {
+            cells.remove(key);
+        }
+    }
+
+    private void markDirty(String userId) {
+        dirty.add(userId);
+        if (!scheduled) {
+            scheduled = true;
+            PERSISTER.schedule(this::flush, PERSIST_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
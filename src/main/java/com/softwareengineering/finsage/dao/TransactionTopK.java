@@ -0,0 +1,156 @@
+package com.softwareengineering.finsage.dao;
+
+import com.softwareengineering.finsage.model.Money;
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The largest transactions of each user, month and side of zero, at most
+ * {@link #CAPACITY} per group, so a top-k list needs neither a scan nor a sort of the
+ * ledger. A month is loaded from its segment the first time it is asked for and then
+ * follows every change the {@link TransactionDao} commits; everything is dropped
+ * whenever records change some other way (the DAO's reload count moves).
+ *
+ * <p>Each group holds exactly the largest {@code n} of its transactions for some
+ * {@code n}: an insert joins when it beats the smallest held entry (or the group is
+ * held in full), and a delete just leaves. Deletes can therefore leave a group
+ * holding fewer than a read asks for while the month has more; only then is the month
+ * read again.
+ */
+final class TransactionTopK {
+    static final int CAPACITY = 20;
+
+    /**
+     * Largest magnitude first, then latest date; ids break the remaining ties.
+     */
+    static final Comparator<Transaction> LARGEST_FIRST = Comparator
+            .comparingLong((Transaction t) -> Money.abs(t.getAmountCents())).reversed()
+            .thenComparing(Transaction::getDate, Comparator.reverseOrder())
+            .thenComparing(Transaction::getId);
+
+    private static final class Group {
+        final TreeSet<Transaction> top = new TreeSet<>(LARGEST_FIRST);
+        int size;
+
+        void add(Transaction t) {
+            if (top.size() == size || !top.isEmpty() && LARGEST_FIRST.compare(t, top.last()) < 0) {
+                top.add(t);
+                if (top.size() > CAPACITY) {
+                    top.pollLast();
+                }
+            }
+            size++;
+        }
+
+        void remove(Transaction t) {
+            top.remove(t);
+            size--;
+        }
+
+        boolean covers(int k) {
+            return top.size() >= k || top.size() == size;
+        }
+    }
+
+    private final Map<String, Map<YearMonth, Group[]>> users = new HashMap<>();
+    private long reloads = -1;
+
+    /**
+     * The largest {@code k} (at most {@link #CAPACITY}) expenses or incomes over the
+     * months, largest first, or null if some month is not loaded at this reload count or
+     * no longer holds enough entries. The transactions are the held instances.
+     */
+    synchronized List<Transaction> top(String userId, long reloadCount, List<YearMonth> months, boolean expense,
+                                       int k) {
+        if (!missing(userId, reloadCount, months, expense, k).isEmpty()) {
+            return null;
+        }
+        Map<YearMonth, Group[]> loaded = users.get(userId);
+        List<Transaction> result = new ArrayList<>();
+        for (YearMonth month : months) {
+            int i = 0;
+            for (Transaction t : loaded.get(month)[side(expense)].top) {
+                if (i++ == k) {
+                    break;
+                }
+                result.add(t);
+            }
+        }
+        result.sort(LARGEST_FIRST);
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    /**
+     * Those of the months that {@link #top} cannot answer the same question from at this
+     * reload count.
+     */
+    synchronized List<YearMonth> missing(String userId, long reloadCount, List<YearMonth> months, boolean expense,
+                                         int k) {
+        reset(reloadCount);
+        Map<YearMonth, Group[]> loaded = users.getOrDefault(userId, Map.of());
+        List<YearMonth> result = new ArrayList<>();
+        for (YearMonth month : months) {
+            Group[] groups = loaded.get(month);
+            if (groups == null || !groups[side(expense)].covers(k)) {
+                result.add(month);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * (Re)loads one month from all of its transactions, read at {@code reloadCount}
+     * while no change was being committed.
+     */
+    synchronized void load(String userId, long reloadCount, YearMonth month, List<Transaction> transactions) {
+        reset(reloadCount);
+        Group[] groups = {new Group(), new Group()};
+        for (Transaction t : transactions) {
+            if (t.getAmountCents() != 0) {
+                groups[side(t.getAmountCents() < 0)].add(t);
+            }
+        }
+        users.computeIfAbsent(userId, k -> new HashMap<>()).put(month, groups);
+    }
+
+    /**
+     * Applies one committed change (null for absent) to the months loaded so far.
+     */
+    synchronized void changed(Transaction before, Transaction after) {
+        Group leaving = group(before);
+        if (leaving != null) {
+            leaving.remove(before);
+        }
+        Group joining = group(after);
+        if (joining != null) {
+            joining.add(after);
+        }
+    }
+
+    private void reset(long reloadCount) {
+        if (reloadCount != reloads) {
+            users.clear();
+            reloads = reloadCount;
+        }
+    }
+
+    private Group group(Transaction t) {
+        if (t == null || t.getAmountCents() == 0) {
+            return null;
+        }
+        Map<YearMonth, Group[]> months = users.get(t.getUserId());
+        Group[] groups = months != null ? months.get(YearMonth.from(t.getDate())) : null;
+        return groups != null ? groups[side(t.getAmountCents() < 0)] : null;
+    }
+
+    private static int side(boolean expense) {
+        return expense ? 1 : 0;
+    }
+}
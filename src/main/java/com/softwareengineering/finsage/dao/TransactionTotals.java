@@ -0,0 +1,88 @@
+package com.softwareengineering.finsage.dao;
+
+import com.softwareengineering.finsage.model.Money;
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running daily totals of each user's transactions, overall and per category, both
+ * net and as expense magnitudes, so any date-range total is a pair of
+ * {@link DailySums} prefix lookups. A user's totals are built from one consistent read
+ * the first time they are asked for and then follow every change the
+ * {@link TransactionDao} commits; they are dropped whenever records change some other
+ * way (the DAO's reload count moves).
+ */
+final class TransactionTotals {
+    private static final class Sums {
+        final DailySums net = new DailySums();
+        final DailySums expense = new DailySums();
+
+        void add(long day, long cents, int sign) {
+            net.add(day, sign * cents);
+            expense.add(day, sign * Money.expense(cents));
+        }
+
+        long sum(long from, long to, boolean expensesOnly) {
+            return (expensesOnly ? expense : net).sum(from, to);
+        }
+    }
+
+    private static final class UserTotals {
+        final Sums all = new Sums();
+        final Map<String, Sums> byCategory = new HashMap<>();
+    }
+
+    private final Map<String, UserTotals> users = new HashMap<>();
+    private long reloads = -1;
+
+    /**
+     * Total over days [from, to] (epoch days, inclusive), optionally for one category, or
+     * null if the user's totals are not built at this reload count.
+     */
+    synchronized Long sum(String userId, long reloadCount, long from, long to, String categoryId,
+                          boolean expensesOnly) {
+        UserTotals user = reloadCount == reloads ? users.get(userId) : null;
+        if (user == null) {
+            return null;
+        }
+        Sums sums = categoryId == null ? user.all : user.byCategory.get(categoryId);
+        return sums == null ? 0 : sums.sum(from, to, expensesOnly);
+    }
+
+    /**
+     * Builds a user's totals from all of the user's transactions, read at
+     * {@code reloadCount} while no change was being committed.
+     */
+    synchronized void build(String userId, long reloadCount, List<Transaction> transactions) {
+        if (reloadCount != reloads) {
+            users.clear();
+            reloads = reloadCount;
+        }
+        UserTotals user = new UserTotals();
+        for (Transaction t : transactions) {
+            add(user, t, 1);
+        }
+        users.put(userId, user);
+    }
+
+    /**
+     * Applies one committed change (null for absent) to the totals built so far.
+     */
+    synchronized void changed(Transaction before, Transaction after) {
+        if (before != null && users.containsKey(before.getUserId())) {
+            add(users.get(before.getUserId()), before, -1);
+        }
+        if (after != null && users.containsKey(after.getUserId())) {
+            add(users.get(after.getUserId()), after, 1);
+        }
+    }
+
+    private static void add(UserTotals user, Transaction t, int sign) {
+        long day = t.getDate().toEpochDay();
+        user.all.add(day, t.getAmountCents(), sign);
+        user.byCategory.computeIfAbsent(t.getCategoryId(), k -> new Sums()).add(day, t.getAmountCents(), sign);
+    }
+}
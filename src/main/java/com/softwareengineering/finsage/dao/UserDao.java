@@ -1,8 +1,6 @@
 package com.softwareengineering.finsage.dao;
 
 import com.softwareengineering.finsage.model.User;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -15,12 +13,21 @@ public class UserDao extends BaseDao<User> {
     private static final String[] HEADERS = {"id", "username", "email", "phone", "password", "resetCode", "resetTime"};
     private static final String CSV_FILE = "data/users.csv";
 
+    private static final String BY_USERNAME = "username";
+    private static final String BY_EMAIL = "email";
+    private static final String BY_PHONE = "phone";
+    private static final String BY_RESET_CODE = "resetCode";
+
     public UserDao() {
         super(CSV_FILE, HEADERS);
+        addIndex(BY_USERNAME, ignoreCase(User::getUsername));
+        addIndex(BY_EMAIL, ignoreCase(User::getEmail));
+        addIndex(BY_PHONE, User::getPhone);
+        addIndex(BY_RESET_CODE, User::getResetCode);
     }
 
     @Override
-    protected void printRecord(CSVPrinter printer, User user) throws IOException {
+    protected void printRecord(CsvWriter printer, User user) throws IOException {
         printer.printRecord(
                 user.getId(),
                 user.getUsername(),
@@ -33,7 +40,7 @@ public class UserDao extends BaseDao<User> {
     }
 
     @Override
-    protected User parseRecord(CSVRecord record) {
+    protected User parseRecord(CsvRow record) {
         User user = new User();
         user.setId(record.get("id"));
         user.setUsername(record.get("username"));
@@ -53,32 +60,28 @@ public class UserDao extends BaseDao<User> {
         return user.getId();
     }
 
+    @Override
+    protected User copy(User user) {
+        User copy = new User(user.getId(), user.getUsername(), user.getEmail(), user.getPhone(), user.getPassword());
+        copy.setResetCode(user.getResetCode());
+        copy.setResetTime(user.getResetTime());
+        return copy;
+    }
+
     public User getByUsername(String username) {
-        return findBy(u -> u.getUsername().equalsIgnoreCase(username))
-                .stream()
-                .findFirst()
-                .orElse(null);
+        return findFirst(indexed(BY_USERNAME, username)).orElse(null);
     }
 
     public User getByEmail(String email) {
-        return findBy(u -> u.getEmail().equalsIgnoreCase(email))
-                .stream()
-                .findFirst()
-                .orElse(null);
+        return findFirst(indexed(BY_EMAIL, email)).orElse(null);
     }
 
     public User getByPhone(String phone) {
-        return findBy(u -> u.getPhone().equals(phone))
-                .stream()
-                .findFirst()
-                .orElse(null);
+        return findFirst(indexed(BY_PHONE, phone)).orElse(null);
     }
 
     public User getByResetCode(String resetCode) {
-        return findBy(u -> resetCode.equals(u.getResetCode()))
-                .stream()
-                .findFirst()
-                .orElse(null);
+        return findFirst(indexed(BY_RESET_CODE, resetCode)).orElse(null);
     }
 
     public boolean existsByUsername(String username) {
@@ -0,0 +1,27 @@
+package com.softwareengineering.finsage.model;
+
+import java.math.BigDecimal;
+
+/**
+ * A budget whose spending just reached one of the alert thresholds: {@code threshold}
+ * is the fraction of the budget crossed, 1.0 meaning the budget is used up.
+ */
+public class BudgetAlert {
+    private final Budget budget;
+    private final BigDecimal spent;
+    private final double threshold;
+
+    public BudgetAlert(Budget budget, BigDecimal spent, double threshold) {
+        this.budget = budget;
+        this.spent = spent;
+        this.threshold = threshold;
+    }
+
+    public Budget getBudget() { return budget; }
+    public BigDecimal getSpent() { return spent; }
+    public double getThreshold() { return threshold; }
+
+    public boolean isExceeded() {
+        return threshold >= 1.0;
+    }
+}
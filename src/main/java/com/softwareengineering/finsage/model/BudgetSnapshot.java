@@ -0,0 +1,108 @@
+package com.softwareengineering.finsage.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Budget progress of one user's month: every budget of the month with the amount spent
+ * against it, all computed together, so a budget table reads its rows from here instead
+ * of totalling transactions cell by cell. A snapshot never changes; take a new one after
+ * transactions or budgets change.
+ */
+public class BudgetSnapshot {
+    /**
+     * One budget with the month's spending against it.
+     */
+    public static class Line {
+        private final Budget budget;
+        private final BigDecimal spent;
+
+        public Line(Budget budget, BigDecimal spent) {
+            this.budget = budget;
+            this.spent = spent;
+        }
+
+        public Budget getBudget() { return budget; }
+        public BigDecimal getSpent() { return spent; }
+
+        public BigDecimal getRemaining() {
+            return budget.getAmount().subtract(spent);
+        }
+
+        /**
+         * Spent over budgeted, or 0 for a budget that is not positive.
+         */
+        public double getRatio() {
+            if (budget.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                return 0;
+            }
+            return spent.divide(budget.getAmount(), 4, RoundingMode.HALF_UP).doubleValue();
+        }
+    }
+
+    private final YearMonth month;
+    private final List<Line> lines = new ArrayList<>();
+    private final Map<String, Line> linesByBudgetId = new HashMap<>();
+    private final Map<String, BigDecimal> spentByCategory;
+    private final BigDecimal totalSpent;
+    private Line total;
+
+    /**
+     * @param spentByCategory expense totals of the month by category id; categories
+     *                        without expenses may be left out
+     * @param totalSpent      expense total of the month over all categories
+     */
+    public BudgetSnapshot(YearMonth month, List<Budget> budgets, Map<String, BigDecimal> spentByCategory,
+                          BigDecimal totalSpent) {
+        this.month = month;
+        this.spentByCategory = spentByCategory;
+        this.totalSpent = totalSpent;
+        for (Budget budget : budgets) {
+            Line line = new Line(budget, getSpent(budget.getCategoryId()));
+            lines.add(line);
+            linesByBudgetId.put(budget.getId(), line);
+            if (budget.isTotalBudget() && total == null) {
+                total = line;
+            }
+        }
+    }
+
+    public YearMonth getMonth() { return month; }
+
+    public List<Line> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * The line of a budget of this month; a budget the snapshot was not taken with gets
+     * a line from the same spending totals.
+     */
+    public Line getLine(Budget budget) {
+        Line line = linesByBudgetId.get(budget.getId());
+        return line != null && line.getBudget().getAmount().equals(budget.getAmount())
+                ? line : new Line(budget, getSpent(budget.getCategoryId()));
+    }
+
+    public Optional<Line> getTotal() {
+        return Optional.ofNullable(total);
+    }
+
+    /**
+     * Spent in one category, or in all of them for a null category (the total budget's).
+     */
+    public BigDecimal getSpent(String categoryId) {
+        if (categoryId == null) {
+            return totalSpent;
+        }
+        return spentByCategory.getOrDefault(categoryId, Money.toBigDecimal(0));
+    }
+
+    public BigDecimal getTotalSpent() { return totalSpent; }
+}
@@ -0,0 +1,92 @@
+package com.softwareengineering.finsage.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Spending of one holiday: the expense total over its dates and expenses by category,
+ * and the same for the same dates one year earlier, so a holiday can be compared with
+ * how it went last year.
+ */
+public class FestivalSpending {
+    private final Holiday holiday;
+    private final BigDecimal expense;
+    private final Map<String, BigDecimal> expenseByCategory;
+    private final BigDecimal previousExpense;
+    private final Map<String, BigDecimal> previousExpenseByCategory;
+
+    /**
+     * @param expenseByCategory         expense magnitudes over the holiday by category id;
+     *                                  categories without expenses may be left out
+     * @param previousExpense           expense total of the same dates one year earlier
+     * @param previousExpenseByCategory the same, by category id
+     */
+    public FestivalSpending(Holiday holiday, BigDecimal expense,
+                            Map<String, BigDecimal> expenseByCategory, BigDecimal previousExpense,
+                            Map<String, BigDecimal> previousExpenseByCategory) {
+        this.holiday = holiday;
+        this.expense = expense;
+        this.expenseByCategory = expenseByCategory;
+        this.previousExpense = previousExpense;
+        this.previousExpenseByCategory = previousExpenseByCategory;
+    }
+
+    public Holiday getHoliday() { return holiday; }
+    public BigDecimal getExpense() { return expense; }
+    public BigDecimal getPreviousExpense() { return previousExpense; }
+
+    public Map<String, BigDecimal> getExpenseByCategory() {
+        return Collections.unmodifiableMap(expenseByCategory);
+    }
+
+    public Map<String, BigDecimal> getPreviousExpenseByCategory() {
+        return Collections.unmodifiableMap(previousExpenseByCategory);
+    }
+
+    /**
+     * Expense in one category over the holiday.
+     */
+    public BigDecimal getExpense(String categoryId) {
+        return expenseByCategory.getOrDefault(categoryId, Money.toBigDecimal(0));
+    }
+
+    /**
+     * Expense in one category over the same dates one year earlier.
+     */
+    public BigDecimal getPreviousExpense(String categoryId) {
+        return previousExpenseByCategory.getOrDefault(categoryId, Money.toBigDecimal(0));
+    }
+
+    public boolean hasPrevious() {
+        return previousExpense.compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    public boolean hasPrevious(String categoryId) {
+        return getPreviousExpense(categoryId).compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    /**
+     * Relative change of the expense against one year earlier (0.25 for 25% more), or 0
+     * when nothing was spent then.
+     */
+    public double getExpenseChange() {
+        return change(expense, previousExpense);
+    }
+
+    /**
+     * Relative change of the expense in one category against one year earlier, or 0 when
+     * nothing was spent in it then.
+     */
+    public double getExpenseChange(String categoryId) {
+        return change(getExpense(categoryId), getPreviousExpense(categoryId));
+    }
+
+    private static double change(BigDecimal expense, BigDecimal previous) {
+        if (previous.compareTo(BigDecimal.ZERO) <= 0) {
+            return 0;
+        }
+        return expense.subtract(previous).divide(previous, 4, RoundingMode.HALF_UP).doubleValue();
+    }
+}
@@ -0,0 +1,59 @@
+package com.softwareengineering.finsage.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money as a {@code long} count of cents (scale 2). Aggregations add cents in
+ * primitive loops and convert to {@link BigDecimal} once, at the API or UI boundary.
+ * Arithmetic throws {@link ArithmeticException} on overflow instead of wrapping.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+
+    private Money() {}
+
+    /**
+     * Rejects an amount that is not a whole number of cents within the range of a
+     * {@code long}. Amounts are checked here where they enter the application (the
+     * {@code Validator} for the dialogs, the importer), so the models never see one.
+     *
+     * @throws IllegalArgumentException saying what is wrong with the amount
+     */
+    public static void checkAmount(BigDecimal amount) {
+        if (amount.stripTrailingZeros().scale() > SCALE) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " has more than " + SCALE
+                    + " decimal places");
+        }
+        if (amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " is out of range");
+        }
+    }
+
+    /**
+     * Cents for an amount that passed {@link #checkAmount}. Amounts read back from files
+     * written before amounts were checked are rounded half-up.
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Magnitude of an expense: {@code -cents} for a negative amount, 0 otherwise.
+     */
+    public static long expense(long cents) {
+        return cents < 0 ? Math.negateExact(cents) : 0;
+    }
+
+    public static long abs(long cents) {
+        return cents < 0 ? Math.negateExact(cents) : cents;
+    }
+}
@@ -6,6 +6,7 @@ import java.time.LocalDate;
 public class Transaction {
     private String id;
     private BigDecimal amount;
+    private long amountCents;
     private LocalDate date;
     private String categoryId;
     private String note;
@@ -16,7 +17,7 @@ public class Transaction {
 
     public Transaction(String id, BigDecimal amount, LocalDate date, String categoryId, String note, String userId) {
         this.id = id;
-        this.amount = amount;
+        setAmount(amount);
         this.date = date;
         this.categoryId = categoryId;
         this.note = note;
@@ -27,7 +28,13 @@ public class Transaction {
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public BigDecimal getAmount() { return amount; }
-    public void setAmount(BigDecimal amount) { this.amount = amount; }
+    /** {@code amount} should have passed {@link Money#checkAmount}. */
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+        this.amountCents = amount != null ? Money.toCents(amount) : 0;
+    }
+    /** The amount in cents, kept in step with {@link #setAmount}; see {@link Money}. */
+    public long getAmountCents() { return amountCents; }
     public LocalDate getDate() { return date; }
     public void setDate(LocalDate date) { this.date = date; }
     public String getCategoryId() { return categoryId; }
@@ -5,7 +5,6 @@ import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.models.ChatModel;
 import com.openai.models.chat.completions.ChatCompletionCreateParams;
 import com.softwareengineering.finsage.dao.BudgetDao;
-import com.softwareengineering.finsage.dao.CategoryDao;
 import com.softwareengineering.finsage.dao.TransactionDao;
 import com.softwareengineering.finsage.model.Budget;
 import com.softwareengineering.finsage.model.Category;
@@ -16,19 +15,19 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class AISuggestionService {
     private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
     private final TransactionDao transactionDao;
     private final BudgetDao budgetDao;
-    private final CategoryDao categoryDao;
 
     public AISuggestionService() {
         this.transactionDao = new TransactionDao();
         this.budgetDao = new BudgetDao();
-        this.categoryDao = new CategoryDao();
     }
 
     public String getFinancialAdvice(String userQuestion) {
@@ -48,11 +47,11 @@ public class AISuggestionService {
         Budget totalBudget = budgetDao.getTotalBudgetByMonthAndUserId(currentMonth, userId).orElse(null);
 
         // Get all categories
-        List<Category> categories = categoryDao.getByUserId(userId);
+        List<Category> categories = CategoryDictionary.getInstance().getCategories(userId);
 
         // Prepare data for the prompt
-        String transactionSummary = prepareTransactionSummary(transactions, categories);
-        String budgetSummary = prepareBudgetSummary(budgets, totalBudget, categories);
+        String transactionSummary = prepareTransactionSummary(userId, transactions, categories);
+        String budgetSummary = prepareBudgetSummary(userId, budgets, totalBudget);
 
         // Create the prompt
         String systemPrompt = "You are a financial advisor helping users manage their personal finances. " +
@@ -94,21 +93,29 @@ public class AISuggestionService {
         }
     }
 
-    private String prepareTransactionSummary(List<Transaction> transactions, List<Category> categories) {
+    private String prepareTransactionSummary(String userId, List<Transaction> transactions, List<Category> categories) {
         if (transactions.isEmpty()) {
             return "No transactions in the last 3 months.";
         }
 
-        // Group by category and calculate totals
+        // Group by category in one pass; a category id the user does not have is uncategorized
+        CategoryDictionary dictionary = CategoryDictionary.getInstance();
+        Map<String, BigDecimal> categoryTotals = new HashMap<>();
+        BigDecimal uncategorizedTotal = BigDecimal.ZERO;
+        for (Transaction t : transactions) {
+            if (dictionary.getName(userId, t.getCategoryId()) != null) {
+                categoryTotals.merge(t.getCategoryId(), t.getAmount(), BigDecimal::add);
+            } else {
+                uncategorizedTotal = uncategorizedTotal.add(t.getAmount());
+            }
+        }
+
         StringBuilder summary = new StringBuilder();
         BigDecimal totalIncome = BigDecimal.ZERO;
         BigDecimal totalExpense = BigDecimal.ZERO;
 
         for (Category category : categories) {
-            BigDecimal categoryTotal = transactions.stream()
-                    .filter(t -> t.getCategoryId().equals(category.getId()))
-                    .map(Transaction::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            BigDecimal categoryTotal = categoryTotals.getOrDefault(category.getId(), BigDecimal.ZERO);
 
             if (categoryTotal.compareTo(BigDecimal.ZERO) != 0) {
                 String categoryType = category.getId().startsWith("INC_") ? "Income" : "Expense";
@@ -124,11 +131,6 @@ public class AISuggestionService {
         }
 
         // Add uncategorized transactions
-        BigDecimal uncategorizedTotal = transactions.stream()
-                .filter(t -> categories.stream().noneMatch(c -> c.getId().equals(t.getCategoryId())))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
         if (uncategorizedTotal.compareTo(BigDecimal.ZERO) != 0) {
             summary.append(String.format("- Uncategorized: %,.2f\n", uncategorizedTotal));
             if (uncategorizedTotal.compareTo(BigDecimal.ZERO) > 0) {
@@ -145,7 +147,7 @@ public class AISuggestionService {
         return summary.toString();
     }
 
-    private String prepareBudgetSummary(List<Budget> budgets, Budget totalBudget, List<Category> categories) {
+    private String prepareBudgetSummary(String userId, List<Budget> budgets, Budget totalBudget) {
         if (budgets.isEmpty() && totalBudget == null) {
             return "No budget set for current month.";
         }
@@ -158,11 +160,10 @@ public class AISuggestionService {
 
         for (Budget budget : budgets) {
             if (budget.getCategoryId() != null) {
-                String categoryName = categories.stream()
-                        .filter(c -> c.getId().equals(budget.getCategoryId()))
-                        .findFirst()
-                        .map(Category::getName)
-                        .orElse("Unknown Category");
+                String categoryName = CategoryDictionary.getInstance().getName(userId, budget.getCategoryId());
+                if (categoryName == null) {
+                    categoryName = "Unknown Category";
+                }
 
                 summary.append(String.format("- %s: %,.2f\n", categoryName, budget.getAmount()));
             }
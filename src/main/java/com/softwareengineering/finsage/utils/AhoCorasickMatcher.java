@@ -0,0 +1,118 @@
+package com.softwareengineering.finsage.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Finds every one of a fixed set of patterns in a text with a single pass over the text
+ * (Aho-Corasick), however many patterns there are. Matching ignores case; patterns may
+ * overlap and contain one another.
+ *
+ * <p>States are numbered from the root (0). Each keeps its transitions in a small map,
+ * a failure link to the state for its longest proper suffix that is also a pattern
+ * prefix, and an output link to the nearest state on that failure chain that ends a
+ * pattern, so reporting the patterns ending at a position only walks actual matches.
+ */
+public final class AhoCorasickMatcher<V> {
+    private final List<Map<Character, Integer>> next = new ArrayList<>();
+    private int[] fail;
+    private int[] output;
+    // Index of the pattern a state ends, or -1
+    private final List<Integer> ends = new ArrayList<>();
+    private final List<V> values = new ArrayList<>();
+
+    /**
+     * @param patterns each pattern with the value {@link #findAll} reports for it; empty
+     *                 patterns are ignored
+     */
+    public AhoCorasickMatcher(Map<String, V> patterns) {
+        addState();
+        for (Map.Entry<String, V> pattern : patterns.entrySet()) {
+            String text = pattern.getKey();
+            if (text == null || text.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = Character.toLowerCase(text.charAt(i));
+                Integer target = next.get(state).get(c);
+                if (target == null) {
+                    target = addState();
+                    next.get(state).put(c, target);
+                }
+                state = target;
+            }
+            if (ends.get(state) < 0) {
+                ends.set(state, values.size());
+                values.add(pattern.getValue());
+            }
+        }
+        link();
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * The values of the distinct patterns occurring in {@code text}, in the order their
+     * first occurrences end.
+     */
+    public List<V> findAll(CharSequence text) {
+        List<V> result = new ArrayList<>();
+        if (text == null || values.isEmpty()) {
+            return result;
+        }
+        boolean[] seen = new boolean[values.size()];
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            Integer target;
+            while ((target = next.get(state).get(c)) == null && state != 0) {
+                state = fail[state];
+            }
+            state = target != null ? target : 0;
+            for (int match = ends.get(state) >= 0 ? state : output[state]; match > 0; match = output[match]) {
+                int pattern = ends.get(match);
+                if (!seen[pattern]) {
+                    seen[pattern] = true;
+                    result.add(values.get(pattern));
+                }
+            }
+        }
+        return result;
+    }
+
+    private int addState() {
+        next.add(new HashMap<>(4));
+        ends.add(-1);
+        return next.size() - 1;
+    }
+
+    /**
+     * Failure and output links, breadth first so every shorter state is linked first.
+     */
+    private void link() {
+        fail = new int[next.size()];
+        output = new int[next.size()];
+        Queue<Integer> queue = new ArrayDeque<>(next.get(0).values());
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : next.get(state).entrySet()) {
+                int child = edge.getValue();
+                int candidate = fail[state];
+                Integer target;
+                while ((target = next.get(candidate).get(edge.getKey())) == null && candidate != 0) {
+                    candidate = fail[candidate];
+                }
+                fail[child] = target != null && target != child ? target : 0;
+                output[child] = ends.get(fail[child]) >= 0 ? fail[child] : output[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+}
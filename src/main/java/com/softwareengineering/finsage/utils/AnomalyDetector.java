@@ -0,0 +1,411 @@
+package com.softwareengineering.finsage.utils;
+
+import com.softwareengineering.finsage.dao.AbnormalConfigDao;
+import com.softwareengineering.finsage.dao.CategoryDao;
+import com.softwareengineering.finsage.dao.ChangeListener;
+import com.softwareengineering.finsage.dao.TransactionDao;
+import com.softwareengineering.finsage.dao.TransactionQuery;
+import com.softwareengineering.finsage.model.AbnormalConfig;
+import com.softwareengineering.finsage.model.Category;
+import com.softwareengineering.finsage.model.Money;
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Flags unusual transactions as they are written, keeping the flags in a side index so
+ * the flagged transactions of a user can be listed without looking at the others.
+ *
+ * <p>A transaction is flagged {@link #OVER_THRESHOLD} when its amount is above the
+ * threshold of one of the user's {@link AbnormalConfig}s whose item name is the
+ * transaction's category name or appears in its note (ignoring case), and
+ * {@link #OUTLIER} when it is more than {@value #DEVIATIONS} standard deviations above
+ * its category's exponentially weighted moving mean (expenses and income tracked apart,
+ * after {@value #WARM_UP} transactions); unusually small amounts are not flagged. Notes are scanned once by an
+ * {@link AhoCorasickMatcher} compiled from the user's item names, so the cost per
+ * transaction is its note's length whatever the number of items.
+ *
+ * <p>A user's flags and moving averages are built by one pass over the user's history in
+ * date order the first time they are asked for, and then follow every transaction
+ * write. Editing or deleting a transaction re-checks or drops its flag but leaves the
+ * averages alone. Changing a user's configs or categories re-reads only that user's
+ * settings and re-judges the threshold flags against them, going through just the
+ * transactions above the lowest threshold; averages and outlier flags are kept. Only
+ * transactions or settings re-read from disk (another process wrote them) drop more:
+ * every user's index, or every user's settings.
+ */
+public class AnomalyDetector {
+    public static final int OVER_THRESHOLD = 1;
+    public static final int OUTLIER = 2;
+
+    private static final double ALPHA = 0.1;
+    private static final double DEVIATIONS = 3;
+    private static final int WARM_UP = 10;
+
+    private static AnomalyDetector instance;
+
+    /**
+     * Exponentially weighted moving mean and variance of amount magnitudes.
+     */
+    private static final class Ewma {
+        long count;
+        double mean;
+        double variance;
+
+        boolean isOutlier(double x) {
+            return count >= WARM_UP && variance > 0 && x - mean > DEVIATIONS * Math.sqrt(variance);
+        }
+
+        void add(double x) {
+            if (count++ == 0) {
+                mean = x;
+                return;
+            }
+            double diff = x - mean;
+            double increment = ALPHA * diff;
+            mean += increment;
+            variance = (1 - ALPHA) * (variance + diff * increment);
+        }
+    }
+
+    private record Flag(Transaction transaction, int reasons) {}
+
+    /**
+     * A user's configs and category names, as read at one settings epoch.
+     */
+    private static final class Settings {
+        final long epoch;
+        // Lower-cased item name to its config (the lowest threshold of equal names)
+        final Map<String, AbnormalConfig> items = new HashMap<>();
+        AhoCorasickMatcher<AbnormalConfig> matcher;
+        final Map<String, String> categoryNames = new HashMap<>();
+
+        Settings(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    private static final class UserState {
+        volatile Settings settings;
+        final Map<String, Ewma> averages = new HashMap<>();
+        final Map<String, Flag> flags = new HashMap<>();
+
+        UserState(Settings settings) {
+            this.settings = settings;
+        }
+    }
+
+    private final TransactionDao transactionDao;
+    private final AbnormalConfigDao abnormalConfigDao;
+    private final CategoryDao categoryDao;
+    private final Map<String, UserState> users = new HashMap<>();
+    // Users whose configs or categories this process changed since their settings were read
+    private final Set<String> changedSettings = new HashSet<>();
+    // Moves when configs or categories are re-read from disk, outdating every user's settings
+    private long settingsEpoch;
+    private volatile boolean settingsReloaded;
+    private volatile boolean stale;
+
+    public static synchronized AnomalyDetector getInstance() {
+        if (instance == null) {
+            instance = new AnomalyDetector(new TransactionDao(), new AbnormalConfigDao(), new CategoryDao());
+        }
+        return instance;
+    }
+
+    private AnomalyDetector(TransactionDao transactionDao, AbnormalConfigDao abnormalConfigDao,
+                            CategoryDao categoryDao) {
+        this.transactionDao = transactionDao;
+        this.abnormalConfigDao = abnormalConfigDao;
+        this.categoryDao = categoryDao;
+        transactionDao.addChangeListener(new ChangeListener<>() {
+            @Override
+            public void changed(List<Change<Transaction>> changes) {
+                transactionsChanged(changes);
+            }
+
+            @Override
+            public void reloaded() {
+                // Callers may hold store locks: just flag, the next use rebuilds.
+                stale = true;
+            }
+        });
+        abnormalConfigDao.addChangeListener(new ChangeListener<>() {
+            @Override
+            public void changed(List<Change<AbnormalConfig>> changes) {
+                settingsChanged(changes, AbnormalConfig::getUserId);
+            }
+
+            @Override
+            public void reloaded() {
+                settingsReloaded = true;
+            }
+        });
+        categoryDao.addChangeListener(new ChangeListener<>() {
+            @Override
+            public void changed(List<Change<Category>> changes) {
+                settingsChanged(changes, Category::getUserId);
+            }
+
+            @Override
+            public void reloaded() {
+                settingsReloaded = true;
+            }
+        });
+    }
+
+    /**
+     * The user's flagged transactions, latest first, after every queued transaction write
+     * has been applied.
+     */
+    public List<Transaction> getAnomalies(String userId) {
+        transactionDao.flush();
+        UserState state = state(userId);
+        List<Flag> flags;
+        // The writer thread updates the flags under this monitor.
+        synchronized (this) {
+            flags = new ArrayList<>(state.flags.values());
+        }
+        List<Transaction> result = new ArrayList<>(flags.size());
+        for (Flag flag : flags) {
+            result.add(copy(flag.transaction()));
+        }
+        result.sort(Comparator.comparing(Transaction::getDate).reversed());
+        return result;
+    }
+
+    /**
+     * The user's flagged transactions that match the query, latest first.
+     */
+    public List<Transaction> getAnomalies(String userId, TransactionQuery query) {
+        List<Transaction> result = getAnomalies(userId);
+        result.removeIf(t -> !query.test(t));
+        return result;
+    }
+
+    /**
+     * {@link #OVER_THRESHOLD} and/or {@link #OUTLIER} for a flagged transaction, 0
+     * otherwise, after every queued transaction write has been applied.
+     */
+    public int getReasons(String userId, String transactionId) {
+        transactionDao.flush();
+        UserState state = state(userId);
+        synchronized (this) {
+            Flag flag = state.flags.get(transactionId);
+            return flag != null ? flag.reasons() : 0;
+        }
+    }
+
+    /**
+     * The user's configured items that the text mentions (ignoring case), in the order
+     * they end in the text.
+     */
+    public List<String> findMentionedItems(String userId, String text) {
+        List<String> result = new ArrayList<>();
+        for (AbnormalConfig config : state(userId).settings.matcher.findAll(text)) {
+            result.add(config.getItemName());
+        }
+        return result;
+    }
+
+    private UserState state(String userId) {
+        // Checks the config and category files (another process's edits arrive as
+        // reloaded()) and applies queued writes to them, which arrive as changes.
+        abnormalConfigDao.getVersion();
+        categoryDao.getVersion();
+        UserState state;
+        synchronized (this) {
+            if (stale) {
+                stale = false;
+                users.clear();
+            }
+            if (settingsReloaded) {
+                settingsReloaded = false;
+                settingsEpoch++;
+            }
+            state = users.get(userId);
+            if (state != null && state.settings.epoch == settingsEpoch && !changedSettings.contains(userId)) {
+                return state;
+            }
+        }
+        return state == null ? build(userId) : refreshSettings(userId, state);
+    }
+
+    /**
+     * Builds the user's flags and averages by one pass over the user's history.
+     */
+    private UserState build(String userId) {
+        for (;;) {
+            long version = transactionDao.getVersion();
+            UserState state = new UserState(settings(userId));
+            for (Transaction t : transactionDao.find(TransactionQuery.forUser(userId)
+                    .sortBy(TransactionQuery.Sort.DATE_ASC))) {
+                check(state, t, true);
+            }
+            synchronized (this) {
+                users.put(userId, state);
+            }
+            // A write between the read and publishing the state went unseen: start over.
+            if (transactionDao.getVersion() == version) {
+                return state;
+            }
+            synchronized (this) {
+                users.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Re-reads the user's settings and re-judges the threshold flags against them. Only
+     * transactions above the lowest threshold can be over one, so only those are read;
+     * outlier flags stay as they were judged when their transaction was written.
+     */
+    private UserState refreshSettings(String userId, UserState state) {
+        Settings settings = settings(userId);
+        Long lowest = null;
+        for (AbnormalConfig config : settings.items.values()) {
+            long threshold = Money.toCents(config.getThreshold());
+            lowest = lowest == null || threshold < lowest ? threshold : lowest;
+        }
+        for (;;) {
+            long version = transactionDao.getVersion();
+            List<Transaction> candidates = new ArrayList<>();
+            if (lowest != null) {
+                BigDecimal amount = Money.toBigDecimal(lowest);
+                candidates.addAll(transactionDao.find(TransactionQuery.forUser(userId).amountAbove(amount)));
+                candidates.addAll(transactionDao.find(TransactionQuery.forUser(userId).amountBelow(amount.negate())));
+            }
+            synchronized (this) {
+                if (users.get(userId) != state) {
+                    // Dropped meanwhile by a reload.
+                    return state(userId);
+                }
+                state.settings = settings;
+                state.flags.replaceAll((id, flag) -> new Flag(flag.transaction(), flag.reasons() & OUTLIER));
+                state.flags.values().removeIf(flag -> flag.reasons() == 0);
+                for (Transaction t : candidates) {
+                    if (overThreshold(settings, t)) {
+                        Flag flag = state.flags.get(t.getId());
+                        state.flags.put(t.getId(), new Flag(t, OVER_THRESHOLD | (flag != null ? flag.reasons() : 0)));
+                    }
+                }
+            }
+            // A write between the read and applying it may have been judged on old settings.
+            if (transactionDao.getVersion() == version) {
+                return state;
+            }
+        }
+    }
+
+    private synchronized <T> void settingsChanged(List<ChangeListener.Change<T>> changes, Function<T, String> userOf) {
+        for (ChangeListener.Change<T> change : changes) {
+            if (change.before() != null) {
+                changedSettings.add(userOf.apply(change.before()));
+            }
+            if (change.after() != null) {
+                changedSettings.add(userOf.apply(change.after()));
+            }
+        }
+    }
+
+    private void transactionsChanged(List<ChangeListener.Change<Transaction>> changes) {
+        synchronized (this) {
+            if (stale) {
+                // Rebuilt on next use.
+                return;
+            }
+            for (ChangeListener.Change<Transaction> change : changes) {
+                Transaction before = change.before();
+                Transaction after = change.after();
+                UserState state = users.get((after != null ? after : before).getUserId());
+                if (state == null) {
+                    continue;
+                }
+                if (before != null) {
+                    state.flags.remove(before.getId());
+                }
+                if (after != null) {
+                    check(state, after, before == null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flags the transaction if it is unusual, then (for a new one) counts it into its
+     * category's average.
+     */
+    private static void check(UserState state, Transaction t, boolean learn) {
+        long cents = t.getAmountCents();
+        long magnitude = Money.abs(cents);
+        int reasons = overThreshold(state.settings, t) ? OVER_THRESHOLD : 0;
+        Ewma average = state.averages.computeIfAbsent((cents < 0 ? "-" : "+") + t.getCategoryId(), k -> new Ewma());
+        if (average.isOutlier(magnitude)) {
+            reasons |= OUTLIER;
+        }
+        if (learn) {
+            average.add(magnitude);
+        }
+        if (reasons != 0) {
+            state.flags.put(t.getId(), new Flag(t, reasons));
+        }
+    }
+
+    private static boolean overThreshold(Settings settings, Transaction t) {
+        Long threshold = lowestThreshold(settings, t);
+        return threshold != null && Money.abs(t.getAmountCents()) > threshold;
+    }
+
+    private static Long lowestThreshold(Settings settings, Transaction t) {
+        List<AbnormalConfig> matches = settings.matcher.findAll(t.getNote());
+        String categoryName = settings.categoryNames.get(t.getCategoryId());
+        AbnormalConfig byCategory = categoryName != null ? settings.items.get(categoryName.toLowerCase(Locale.ROOT)) : null;
+        if (byCategory != null) {
+            matches.add(byCategory);
+        }
+        Long result = null;
+        for (AbnormalConfig config : matches) {
+            long threshold = Money.toCents(config.getThreshold());
+            if (result == null || threshold < result) {
+                result = threshold;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the user's settings. A change to them from here on marks the user again.
+     */
+    private Settings settings(String userId) {
+        Settings settings;
+        synchronized (this) {
+            changedSettings.remove(userId);
+            settings = new Settings(settingsEpoch);
+        }
+        for (AbnormalConfig config : abnormalConfigDao.getByUserId(userId)) {
+            if (config.getItemName() != null && !config.getItemName().trim().isEmpty()
+                    && config.getThreshold() != null) {
+                settings.items.merge(config.getItemName().trim().toLowerCase(Locale.ROOT), config,
+                        (a, b) -> a.getThreshold().compareTo(b.getThreshold()) <= 0 ? a : b);
+            }
+        }
+        settings.matcher = new AhoCorasickMatcher<>(settings.items);
+        for (Category category : categoryDao.getByUserId(userId)) {
+            settings.categoryNames.put(category.getId(), category.getName());
+        }
+        return settings;
+    }
+
+    private static Transaction copy(Transaction t) {
+        return new Transaction(t.getId(), t.getAmount(), t.getDate(), t.getCategoryId(), t.getNote(), t.getUserId());
+    }
+}
@@ -0,0 +1,236 @@
+package com.softwareengineering.finsage.utils;
+
+import com.softwareengineering.finsage.dao.BudgetDao;
+import com.softwareengineering.finsage.dao.ChangeListener;
+import com.softwareengineering.finsage.dao.RollupCell;
+import com.softwareengineering.finsage.dao.TransactionDao;
+import com.softwareengineering.finsage.model.Budget;
+import com.softwareengineering.finsage.model.BudgetAlert;
+import com.softwareengineering.finsage.model.Money;
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Raises a {@link BudgetAlert} whenever a write pushes a budget's spending across one of
+ * the alert thresholds (fractions of the budget, 70%, 90% and 100% unless
+ * {@link #setThresholds configured}).
+ *
+ * <p>The engine listens to every transaction write and keeps running expense totals per
+ * user, month and category, plus each month's total for the total budget. A month's
+ * totals are read from the transaction rollup the first time a write touches it; after
+ * that each written batch only adds its own deltas, so an import of any size costs one
+ * pass over the imported rows. Alerts are handed to the alert listeners as they happen
+ * (on the writer thread) and kept for {@link #takeAlerts}.
+ */
+public class BudgetAlertEngine {
+    public static final double[] DEFAULT_THRESHOLDS = {0.7, 0.9, 1.0};
+    private static final int MAX_PENDING = 100;
+
+    private static BudgetAlertEngine instance;
+
+    private final TransactionDao transactionDao;
+    private final BudgetDao budgetDao;
+    // Cents spent by user, month and category; the null category holds the month's total.
+    private final Map<String, Map<YearMonth, Map<String, long[]>>> spent = new HashMap<>();
+    // Budgets by user and month as of budgetsVersion; only read outside the lock above.
+    private final Map<String, Map<YearMonth, List<Budget>>> budgets = new ConcurrentHashMap<>();
+    private volatile long budgetsVersion = -1;
+    private final Map<String, List<BudgetAlert>> pending = new HashMap<>();
+    private final List<Consumer<BudgetAlert>> listeners = new CopyOnWriteArrayList<>();
+    private volatile double[] thresholds = DEFAULT_THRESHOLDS.clone();
+    private volatile boolean stale;
+
+    public static synchronized BudgetAlertEngine getInstance() {
+        if (instance == null) {
+            instance = new BudgetAlertEngine(new TransactionDao(), new BudgetDao());
+        }
+        return instance;
+    }
+
+    private BudgetAlertEngine(TransactionDao transactionDao, BudgetDao budgetDao) {
+        this.transactionDao = transactionDao;
+        this.budgetDao = budgetDao;
+        transactionDao.addChangeListener(new ChangeListener<>() {
+            @Override
+            public void changed(List<Change<Transaction>> changes) {
+                transactionsChanged(changes);
+            }
+
+            @Override
+            public void reloaded() {
+                // Callers may hold store locks: just flag, the next batch drops the totals.
+                stale = true;
+            }
+        });
+    }
+
+    /**
+     * Fractions of a budget whose crossing raises an alert, such as 0.8 for 80%.
+     */
+    public void setThresholds(double... thresholds) {
+        double[] sorted = thresholds.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && !(sorted[0] > 0)) {
+            throw new IllegalArgumentException("Thresholds must be positive");
+        }
+        this.thresholds = sorted;
+    }
+
+    public double[] getThresholds() {
+        return thresholds.clone();
+    }
+
+    /**
+     * Calls {@code listener} with every alert as it is raised, on the thread that wrote
+     * the transactions; UI listeners should hand it over to their own thread.
+     */
+    public void addAlertListener(Consumer<BudgetAlert> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeAlertListener(Consumer<BudgetAlert> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The user's alerts raised since the last call (at most the latest
+     * {@value #MAX_PENDING}), oldest first, after every queued transaction write has
+     * been applied.
+     */
+    public List<BudgetAlert> takeAlerts(String userId) {
+        transactionDao.flush();
+        synchronized (this) {
+            List<BudgetAlert> alerts = pending.remove(userId);
+            return alerts != null ? alerts : new ArrayList<>();
+        }
+    }
+
+    private void transactionsChanged(List<ChangeListener.Change<Transaction>> changes) {
+        // This batch's expense deltas by user, month and category (null: all categories)
+        Map<String, Map<YearMonth, Map<String, long[]>>> deltas = new HashMap<>();
+        for (ChangeListener.Change<Transaction> change : changes) {
+            addDelta(deltas, change.before(), -1);
+            addDelta(deltas, change.after(), 1);
+        }
+        // Budgets are read before taking the lock: reading a DAO may wait for its writer.
+        Map<String, Map<YearMonth, List<Budget>>> monthBudgets = new HashMap<>();
+        deltas.forEach((userId, months) -> months.keySet().forEach(month ->
+                monthBudgets.computeIfAbsent(userId, k -> new HashMap<>()).put(month, budgetsOf(userId, month))));
+        List<BudgetAlert> raised = new ArrayList<>();
+        synchronized (this) {
+            if (stale) {
+                stale = false;
+                spent.clear();
+            }
+            deltas.forEach((userId, months) -> months.forEach((month, monthDeltas) -> {
+                Map<YearMonth, Map<String, long[]>> userSpent = spent.computeIfAbsent(userId, k -> new HashMap<>());
+                Map<String, long[]> counters = userSpent.get(month);
+                if (counters == null) {
+                    // Read after the batch was committed, so it already includes the deltas.
+                    counters = load(userId, month);
+                    userSpent.put(month, counters);
+                } else {
+                    for (Map.Entry<String, long[]> delta : monthDeltas.entrySet()) {
+                        long[] counter = counters.computeIfAbsent(delta.getKey(), k -> new long[1]);
+                        counter[0] = Money.add(counter[0], delta.getValue()[0]);
+                    }
+                }
+                for (Budget budget : monthBudgets.get(userId).get(month)) {
+                    long[] delta = monthDeltas.get(budget.getCategoryId());
+                    if (delta == null || delta[0] <= 0) {
+                        continue;
+                    }
+                    long after = counters.getOrDefault(budget.getCategoryId(), new long[1])[0];
+                    double threshold = crossed(budget, after - delta[0], after);
+                    if (threshold > 0) {
+                        raised.add(new BudgetAlert(budget, Money.toBigDecimal(after), threshold));
+                    }
+                }
+            }));
+            for (BudgetAlert alert : raised) {
+                List<BudgetAlert> alerts = pending.computeIfAbsent(alert.getBudget().getUserId(), k -> new ArrayList<>());
+                alerts.add(alert);
+                if (alerts.size() > MAX_PENDING) {
+                    alerts.remove(0);
+                }
+            }
+        }
+        for (BudgetAlert alert : raised) {
+            for (Consumer<BudgetAlert> listener : listeners) {
+                listener.accept(alert);
+            }
+        }
+    }
+
+    private static void addDelta(Map<String, Map<YearMonth, Map<String, long[]>>> deltas, Transaction t, int sign) {
+        long cents = t != null ? Money.expense(t.getAmountCents()) : 0;
+        if (cents == 0) {
+            return;
+        }
+        Map<String, long[]> monthDeltas = deltas.computeIfAbsent(t.getUserId(), k -> new HashMap<>())
+                .computeIfAbsent(YearMonth.from(t.getDate()), k -> new HashMap<>());
+        // The rollup files transactions without a category under "", keeping null for the total.
+        for (String categoryId : new String[]{t.getCategoryId() != null ? t.getCategoryId() : "", null}) {
+            long[] delta = monthDeltas.computeIfAbsent(categoryId, k -> new long[1]);
+            delta[0] = Money.add(delta[0], sign * cents);
+        }
+    }
+
+    private Map<String, long[]> load(String userId, YearMonth month) {
+        Map<String, long[]> counters = new HashMap<>();
+        long[] total = new long[1];
+        counters.put(null, total);
+        for (RollupCell cell : transactionDao.getRollup(userId, month, month)) {
+            if (cell.expense()) {
+                counters.computeIfAbsent(cell.categoryId(), k -> new long[1])[0] = cell.cents();
+                total[0] = Money.add(total[0], cell.cents());
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * The month's budgets, cached until the budgets change.
+     */
+    private List<Budget> budgetsOf(String userId, YearMonth month) {
+        long version = budgetDao.getVersion();
+        if (version != budgetsVersion) {
+            budgets.clear();
+            budgetsVersion = version;
+        }
+        Map<YearMonth, List<Budget>> userBudgets = budgets.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
+        List<Budget> result = userBudgets.get(month);
+        if (result == null) {
+            result = budgetDao.getByMonthAndUserId(month, userId);
+            userBudgets.put(month, result);
+        }
+        return result;
+    }
+
+    /**
+     * The highest threshold the spending went from below to at or above, or 0 for none.
+     */
+    private double crossed(Budget budget, long before, long after) {
+        long budgetCents = Money.toCents(budget.getAmount());
+        if (budgetCents <= 0) {
+            return 0;
+        }
+        double result = 0;
+        for (double threshold : thresholds) {
+            long limit = (long) Math.ceil(budgetCents * threshold);
+            if (before < limit && after >= limit) {
+                result = threshold;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,128 @@
+package com.softwareengineering.finsage.utils;
+
+import com.softwareengineering.finsage.dao.CategoryDao;
+import com.softwareengineering.finsage.model.Category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Each user's categories loaded once into id and (case-insensitive) name maps, so table
+ * cells, charts and summaries can turn ids into names and back with a hash lookup
+ * instead of going through the category records.
+ *
+ * <p>A user's entries are reloaded after {@link #invalidate} (called by the category
+ * controller when it adds or deletes a category) and whenever the categories file
+ * changed some other way, which the {@link CategoryDao}'s version tells.
+ */
+public class CategoryDictionary {
+    private static CategoryDictionary instance;
+
+    private static final class Entries {
+        final long version;
+        final List<Category> categories;
+        final Map<String, Category> byId = new HashMap<>();
+        // Lower-cased name to the first category of that name
+        final Map<String, Category> byName = new HashMap<>();
+
+        Entries(long version, List<Category> categories) {
+            this.version = version;
+            this.categories = categories;
+            for (Category category : categories) {
+                byId.put(category.getId(), category);
+                if (category.getName() != null) {
+                    byName.putIfAbsent(category.getName().toLowerCase(Locale.ROOT), category);
+                }
+            }
+        }
+    }
+
+    private final CategoryDao categoryDao;
+    private final Map<String, Entries> users = new ConcurrentHashMap<>();
+
+    public static synchronized CategoryDictionary getInstance() {
+        if (instance == null) {
+            instance = new CategoryDictionary(new CategoryDao());
+        }
+        return instance;
+    }
+
+    private CategoryDictionary(CategoryDao categoryDao) {
+        this.categoryDao = categoryDao;
+    }
+
+    /**
+     * The user's categories in the order they were created.
+     */
+    public List<Category> getCategories(String userId) {
+        List<Category> result = new ArrayList<>();
+        for (Category category : entries(userId).categories) {
+            result.add(copy(category));
+        }
+        return result;
+    }
+
+    /**
+     * The user's category with this id, or null.
+     */
+    public Category getById(String userId, String categoryId) {
+        Category category = categoryId != null ? entries(userId).byId.get(categoryId) : null;
+        return category != null ? copy(category) : null;
+    }
+
+    /**
+     * The name of the user's category with this id, or null.
+     */
+    public String getName(String userId, String categoryId) {
+        Category category = categoryId != null ? entries(userId).byId.get(categoryId) : null;
+        return category != null ? category.getName() : null;
+    }
+
+    /**
+     * The user's category with this name, ignoring case, or null.
+     */
+    public Category getByName(String userId, String name) {
+        Category category = name != null ? entries(userId).byName.get(name.trim().toLowerCase(Locale.ROOT)) : null;
+        return category != null ? copy(category) : null;
+    }
+
+    /**
+     * The id of the user's category with this name, ignoring case, or null.
+     */
+    public String getIdByName(String userId, String name) {
+        Category category = name != null ? entries(userId).byName.get(name.trim().toLowerCase(Locale.ROOT)) : null;
+        return category != null ? category.getId() : null;
+    }
+
+    /**
+     * Drops the user's entries so the next lookup reloads them.
+     */
+    public void invalidate(String userId) {
+        if (userId != null) {
+            users.remove(userId);
+        }
+    }
+
+    private Entries entries(String userId) {
+        // Read before loading: a write in between leaves the entries at an older version.
+        long version = categoryDao.getVersion();
+        if (userId == null) {
+            return new Entries(version, Collections.emptyList());
+        }
+        Entries entries = users.get(userId);
+        if (entries == null || entries.version != version) {
+            entries = new Entries(version, categoryDao.getByUserId(userId));
+            users.put(userId, entries);
+        }
+        return entries;
+    }
+
+    private static Category copy(Category category) {
+        return new Category(category.getId(), category.getName(), category.getUserId());
+    }
+}
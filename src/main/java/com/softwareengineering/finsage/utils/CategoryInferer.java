@@ -4,15 +4,12 @@ import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.models.ChatModel;
 import com.openai.models.chat.completions.ChatCompletionCreateParams;
-import com.softwareengineering.finsage.dao.CategoryDao;
 import com.softwareengineering.finsage.model.Category;
 
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class CategoryInferer {
-    private static final CategoryDao categoryDao = new CategoryDao();
-
     public static String inferCategoryFromNote(String note) {
         if (note == null || note.trim().isEmpty()) {
             return null;
@@ -25,7 +22,7 @@ public class CategoryInferer {
         }
 
         // Get all categories for the current user
-        List<Category> userCategories = categoryDao.getByUserId(userId);
+        List<Category> userCategories = CategoryDictionary.getInstance().getCategories(userId);
         if (userCategories.isEmpty()) {
             return null;
         }
@@ -0,0 +1,97 @@
+package com.softwareengineering.finsage.utils;
+
+import com.softwareengineering.finsage.model.FestivalSpending;
+import com.softwareengineering.finsage.model.Holiday;
+import com.softwareengineering.finsage.model.Money;
+import com.softwareengineering.finsage.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Totals transactions per holiday with a sort-merge join: the holidays' date windows (each
+ * holiday's own dates and the same dates one year earlier) sorted by start are swept
+ * together with the transactions in date order, keeping the windows open on the current
+ * date in a heap by end date. Every transaction is added to exactly the windows it falls
+ * in, so the cost is one pass over both lists plus the matches, not holidays times
+ * transactions.
+ */
+public final class FestivalSpendingJoin {
+    private static final class Window {
+        final long start;
+        final long end;
+        long expense;
+        final Map<String, long[]> expenseByCategory = new HashMap<>();
+
+        Window(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        void add(Transaction t) {
+            long cents = t.getAmountCents();
+            if (cents < 0) {
+                expense = Money.add(expense, Money.expense(cents));
+                long[] total = expenseByCategory.computeIfAbsent(t.getCategoryId(), k -> new long[1]);
+                total[0] = Money.add(total[0], Money.expense(cents));
+            }
+        }
+
+        Map<String, BigDecimal> byCategory() {
+            Map<String, BigDecimal> result = new HashMap<>();
+            expenseByCategory.forEach((categoryId, cents) -> result.put(categoryId, Money.toBigDecimal(cents[0])));
+            return result;
+        }
+    }
+
+    private FestivalSpendingJoin() {
+    }
+
+    /**
+     * The spending of every holiday, in the order given.
+     *
+     * @param transactions sorted by date, covering at least the holidays' dates and the
+     *                     same dates one year earlier
+     */
+    public static List<FestivalSpending> join(List<Holiday> holidays, List<Transaction> transactions) {
+        List<Window> current = new ArrayList<>(holidays.size());
+        List<Window> previous = new ArrayList<>(holidays.size());
+        for (Holiday holiday : holidays) {
+            current.add(new Window(holiday.getStartDate().toEpochDay(), holiday.getEndDate().toEpochDay()));
+            previous.add(new Window(holiday.getStartDate().minusYears(1).toEpochDay(),
+                    holiday.getEndDate().minusYears(1).toEpochDay()));
+        }
+        List<Window> byStart = new ArrayList<>(current);
+        byStart.addAll(previous);
+        byStart.sort(Comparator.comparingLong(w -> w.start));
+
+        PriorityQueue<Window> open = new PriorityQueue<>(Comparator.comparingLong(w -> w.end));
+        int next = 0;
+        for (Transaction t : transactions) {
+            long day = t.getDate().toEpochDay();
+            while (next < byStart.size() && byStart.get(next).start <= day) {
+                open.add(byStart.get(next++));
+            }
+            while (!open.isEmpty() && open.peek().end < day) {
+                open.poll();
+            }
+            for (Window window : open) {
+                window.add(t);
+            }
+        }
+
+        List<FestivalSpending> result = new ArrayList<>(holidays.size());
+        for (int i = 0; i < holidays.size(); i++) {
+            Window now = current.get(i);
+            Window before = previous.get(i);
+            result.add(new FestivalSpending(holidays.get(i), Money.toBigDecimal(now.expense), now.byCategory(),
+                    Money.toBigDecimal(before.expense), before.byCategory()));
+        }
+        return result;
+    }
+}
@@ -5,13 +5,12 @@ import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.models.ChatModel;
 import com.openai.models.chat.completions.ChatCompletionCreateParams;
 import com.softwareengineering.finsage.dao.CategoryDao;
+import com.softwareengineering.finsage.dao.RollupCell;
 import com.softwareengineering.finsage.dao.TransactionDao;
 import com.softwareengineering.finsage.model.Category;
-import com.softwareengineering.finsage.model.Transaction;
 import com.softwareengineering.finsage.utils.UserLoginState;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -33,16 +32,10 @@ public class FinancialForecaster {
             return Collections.emptyMap();
         }
 
-        // Get historical data (last 6 months)
+        // Get historical data (last 6 months) from the monthly rollup
         YearMonth currentMonth = YearMonth.now();
-        LocalDate startDate = currentMonth.minusMonths(6).atDay(1);
-        LocalDate endDate = currentMonth.atEndOfMonth();
-
-        List<Transaction> transactions = transactionDao.getByUserIdAndDateRange(userId, startDate, endDate);
-
-        // Filter only expenses (negative amounts)
-        List<Transaction> expenses = transactions.stream()
-                .filter(t -> t.getAmount().compareTo(BigDecimal.ZERO) < 0)
+        List<RollupCell> expenses = transactionDao.getRollup(userId, currentMonth.minusMonths(6), currentMonth).stream()
+                .filter(RollupCell::expense)
                 .collect(Collectors.toList());
 
         if (expenses.isEmpty()) {
@@ -54,15 +47,8 @@ public class FinancialForecaster {
 
         for (Category category : categories) {
             Map<YearMonth, BigDecimal> monthlyData = expenses.stream()
-                    .filter(t -> t.getCategoryId().equals(category.getId()))
-                    .collect(Collectors.groupingBy(
-                            t -> YearMonth.from(t.getDate()),
-                            Collectors.reducing(
-                                    BigDecimal.ZERO,
-                                    t -> t.getAmount().abs(),
-                                    BigDecimal::add
-                            )
-                    ));
+                    .filter(cell -> cell.categoryId().equals(category.getId()))
+                    .collect(Collectors.toMap(RollupCell::month, RollupCell::amount));
             categoryMonthlyExpenses.put(category.getName(), monthlyData);
         }
 
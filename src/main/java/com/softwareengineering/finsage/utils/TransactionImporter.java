@@ -1,6 +1,7 @@
 package com.softwareengineering.finsage.utils;
 
 import com.softwareengineering.finsage.dao.TransactionDao;
+import com.softwareengineering.finsage.model.Money;
 import com.softwareengineering.finsage.model.Transaction;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -60,7 +61,9 @@ public class TransactionImporter {
 
         // Parse amount (required)
         String amountStr = record.get("amount");
-        transaction.setAmount(new BigDecimal(amountStr));
+        BigDecimal amount = new BigDecimal(amountStr);
+        Money.checkAmount(amount);
+        transaction.setAmount(amount);
 
         // Parse date (required)
         String dateStr = record.get("date");
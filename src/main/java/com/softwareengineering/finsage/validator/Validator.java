@@ -1,5 +1,7 @@
 package com.softwareengineering.finsage.validator;
 
+import com.softwareengineering.finsage.model.Money;
+
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
@@ -55,9 +57,10 @@ public class Validator {
     public static boolean validateAmount(String amount) {
         if (amount == null) return false;
         try {
-            new BigDecimal(amount);
+            Money.checkAmount(new BigDecimal(amount));
             return AMOUNT_PATTERN.matcher(amount).matches();
-        } catch (NumberFormatException e) {
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
             return false;
         }
     }
@@ -2,6 +2,7 @@ package com.softwareengineering.finsage.views;
 
 import com.softwareengineering.finsage.controllers.BudgetController;
 import com.softwareengineering.finsage.model.Budget;
+import com.softwareengineering.finsage.model.BudgetSnapshot;
 import com.softwareengineering.finsage.model.Category;
 import com.softwareengineering.finsage.model.Transaction;
 import javafx.collections.FXCollections;
@@ -16,6 +17,7 @@ import javafx.util.StringConverter;
 
 import java.math.BigDecimal;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +26,7 @@ public class BudgetView extends BorderPane {
     private ComboBox<YearMonth> monthComboBox;
     private TableView<Budget> budgetTable;
     private ObservableList<Budget> budgets;
+    private BudgetSnapshot snapshot;
     private TextField totalBudgetField;
     private Label totalSpentLabel;
     private Label totalRemainingLabel;
@@ -129,9 +132,7 @@ public class BudgetView extends BorderPane {
         // Spent amount column
         TableColumn<Budget, String> spentCol = new TableColumn<>("Spent");
         spentCol.setCellValueFactory(cell -> {
-            YearMonth month = cell.getValue().getMonth();
-            String categoryId = cell.getValue().getCategoryId();
-            BigDecimal spent = controller.getSpentAmount(month, categoryId);
+            BigDecimal spent = lineOf(cell.getValue()).getSpent();
             return javafx.beans.binding.Bindings.createStringBinding(
                     () -> String.format("%,.2f", spent));
         });
@@ -139,10 +140,7 @@ public class BudgetView extends BorderPane {
         // Remaining amount column
         TableColumn<Budget, String> remainingCol = new TableColumn<>("Remaining");
         remainingCol.setCellValueFactory(cell -> {
-            YearMonth month = cell.getValue().getMonth();
-            String categoryId = cell.getValue().getCategoryId();
-            BigDecimal spent = controller.getSpentAmount(month, categoryId);
-            BigDecimal remaining = cell.getValue().getAmount().subtract(spent);
+            BigDecimal remaining = lineOf(cell.getValue()).getRemaining();
             return javafx.beans.binding.Bindings.createStringBinding(
                     () -> String.format("%,.2f", remaining));
         });
@@ -166,10 +164,7 @@ public class BudgetView extends BorderPane {
                             setGraphic(null);
                         } else {
                             Budget budget = getTableView().getItems().get(getIndex());
-                            YearMonth month = budget.getMonth();
-                            String categoryId = budget.getCategoryId();
-                            BigDecimal spent = controller.getSpentAmount(month, categoryId);
-                            double progress = spent.divide(budget.getAmount(), 4, BigDecimal.ROUND_HALF_UP).doubleValue();
+                            double progress = lineOf(budget).getRatio();
                             progressBar.setProgress(progress);
 
                             // Set color based on progress
@@ -246,28 +241,42 @@ public class BudgetView extends BorderPane {
         YearMonth month = monthComboBox.getValue();
         if (month == null) return;
 
-        // Load budgets for selected month
-        List<Budget> monthBudgets = controller.getBudgetsByMonth(month);
+        // Load budgets and their progress for selected month
+        snapshot = controller.getMonthSnapshot(month);
+        List<Budget> monthBudgets = new ArrayList<>();
+        for (BudgetSnapshot.Line line : snapshot.getLines()) {
+            monthBudgets.add(line.getBudget());
+        }
         budgets.setAll(monthBudgets);
 
         // Update total budget summary
-        updateTotalBudgetSummary(month);
+        updateTotalBudgetSummary();
+    }
+
+    /**
+     * The budget's row of the current snapshot; cells only read from here.
+     */
+    private BudgetSnapshot.Line lineOf(Budget budget) {
+        if (snapshot == null || !snapshot.getMonth().equals(budget.getMonth())) {
+            snapshot = controller.getMonthSnapshot(budget.getMonth());
+        }
+        return snapshot.getLine(budget);
     }
 
-    private void updateTotalBudgetSummary(YearMonth month) {
-        Optional<Budget> totalBudget = controller.getTotalBudget(month);
-        BigDecimal totalSpent = controller.getTotalSpentAmount(month);
+    private void updateTotalBudgetSummary() {
+        Optional<BudgetSnapshot.Line> totalBudget = snapshot.getTotal();
 
         if (totalBudget.isPresent()) {
-            totalBudgetField.setText(totalBudget.get().getAmount().toString());
-            BigDecimal remaining = totalBudget.get().getAmount().subtract(totalSpent);
+            totalBudgetField.setText(totalBudget.get().getBudget().getAmount().toString());
+            BigDecimal totalSpent = totalBudget.get().getSpent();
+            BigDecimal remaining = totalBudget.get().getRemaining();
 
             totalSpentLabel.setText("Spent: " + String.format("%,.2f", totalSpent));
             totalRemainingLabel.setText("Remaining: " + String.format("%,.2f", remaining));
 
             // 防止除以零
-            if (totalBudget.get().getAmount().compareTo(BigDecimal.ZERO) > 0) {
-                double progress = totalSpent.divide(totalBudget.get().getAmount(), 4, BigDecimal.ROUND_HALF_UP).doubleValue();
+            if (totalBudget.get().getBudget().getAmount().compareTo(BigDecimal.ZERO) > 0) {
+                double progress = totalBudget.get().getRatio();
                 totalProgressBar.setProgress(progress);
 
                 // 设置进度条颜色
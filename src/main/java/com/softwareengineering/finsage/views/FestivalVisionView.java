@@ -3,6 +3,7 @@ package com.softwareengineering.finsage.views;
 
 import com.softwareengineering.finsage.controllers.FestivalVisionController;
 import com.softwareengineering.finsage.model.Category;
+import com.softwareengineering.finsage.model.FestivalSpending;
 import com.softwareengineering.finsage.model.Holiday;
 import com.softwareengineering.finsage.model.Transaction;
 import com.softwareengineering.finsage.utils.InsightGenerator;
@@ -33,6 +34,7 @@ public class FestivalVisionView extends BorderPane {
     private Label incomeSumLabel;
     private Label expenseSumLabel;
     private Label totalSumLabel;
+    private Label comparisonLabel;
     private PieChart categoryPieChart;
 
     public FestivalVisionView(FestivalVisionController controller) {
@@ -118,9 +120,10 @@ public class FestivalVisionView extends BorderPane {
         incomeSumLabel = new Label("Income: 0.00");
         expenseSumLabel = new Label("Expense: 0.00");
         totalSumLabel = new Label("Total: 0.00");
+        comparisonLabel = new Label();
 
         VBox summaryBox = new VBox(5);
-        summaryBox.getChildren().addAll(incomeSumLabel, expenseSumLabel, totalSumLabel);
+        summaryBox.getChildren().addAll(incomeSumLabel, expenseSumLabel, totalSumLabel, comparisonLabel);
         filterGrid.add(summaryBox, 2, 0);
 
         // Create transaction table
@@ -181,7 +184,10 @@ public class FestivalVisionView extends BorderPane {
         Button generateInsightBtn = new Button("Generate Insight");
         generateInsightBtn.setOnAction(e -> generateAndShowInsight());
 
-        buttonBox.getChildren().addAll(addItemBtn, generateInsightBtn);
+        Button compareHolidaysBtn = new Button("Compare Holidays");
+        compareHolidaysBtn.setOnAction(e -> showHolidayComparison());
+
+        buttonBox.getChildren().addAll(addItemBtn, generateInsightBtn, compareHolidaysBtn);
 
         // Set layout
         setTop(filterGrid);
@@ -275,6 +281,63 @@ public class FestivalVisionView extends BorderPane {
         transactions.setAll(filtered);
         updateSummaryLabels();
         updatePieChart();
+        updateComparisonLabel(selectedCategory, selectedHoliday);
+    }
+
+    private void updateComparisonLabel(Category category, Holiday holiday) {
+        if (holiday == null) {
+            comparisonLabel.setText("");
+            return;
+        }
+        FestivalSpending spending = controller.getFestivalSpending(holiday);
+        String change;
+        BigDecimal previous;
+        if (category != null) {
+            previous = spending.getPreviousExpense(category.getId());
+            change = describeChange(spending.hasPrevious(category.getId()), spending.getExpenseChange(category.getId()));
+        } else {
+            previous = spending.getPreviousExpense();
+            change = describeChange(spending.hasPrevious(), spending.getExpenseChange());
+        }
+        comparisonLabel.setText(String.format("Last year: %,.2f%s", previous, change));
+    }
+
+    private void showHolidayComparison() {
+        StringBuilder text = new StringBuilder();
+        for (FestivalSpending spending : controller.getFestivalSpending()) {
+            Holiday holiday = spending.getHoliday();
+            text.append(String.format("%s (%s to %s)%n", holiday.getName(), holiday.getStartDate(), holiday.getEndDate()));
+            text.append(String.format("  Expense: %,.2f, last year: %,.2f%s%n", spending.getExpense(),
+                    spending.getPreviousExpense(), describeChange(spending.hasPrevious(), spending.getExpenseChange())));
+            spending.getExpenseByCategory().entrySet().stream()
+                    .sorted(Map.Entry.<String, BigDecimal>comparingByValue().reversed())
+                    .forEach(entry -> {
+                        Category category = controller.getCategoryById(entry.getKey());
+                        text.append(String.format("    %s: %,.2f, last year: %,.2f%n",
+                                category != null ? category.getName() : "Unknown", entry.getValue(),
+                                spending.getPreviousExpense(entry.getKey())));
+                    });
+            text.append(System.lineSeparator());
+        }
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Holiday Comparison");
+        alert.setHeaderText("Holiday spending against the same dates last year");
+
+        TextArea textArea = new TextArea(text.length() > 0 ? text.toString() : "No holidays yet.");
+        textArea.setEditable(false);
+        textArea.setWrapText(true);
+        textArea.setPrefSize(600, 400);
+
+        alert.getDialogPane().setContent(textArea);
+        alert.showAndWait();
+    }
+
+    private static String describeChange(boolean hasPrevious, double change) {
+        if (!hasPrevious) {
+            return "";
+        }
+        return String.format(" (%+.0f%%)", change * 100);
     }
 
     // 修改 generateAndShowInsight() 方法:
@@ -322,4 +385,4 @@ public class FestivalVisionView extends BorderPane {
         alert.setContentText(message);
         alert.showAndWait();
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
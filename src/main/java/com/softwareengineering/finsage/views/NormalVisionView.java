@@ -2,8 +2,10 @@ package com.softwareengineering.finsage.views;
 
 import com.softwareengineering.finsage.controllers.NormalVisionController;
 import com.softwareengineering.finsage.dao.TransactionDao;
+import com.softwareengineering.finsage.model.BudgetAlert;
 import com.softwareengineering.finsage.model.Category;
 import com.softwareengineering.finsage.model.Transaction;
+import com.softwareengineering.finsage.utils.DialogUtil;
 import com.softwareengineering.finsage.utils.TransactionImporter;
 import com.softwareengineering.finsage.utils.UserLoginState;
 import javafx.collections.FXCollections;
@@ -23,6 +25,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class NormalVisionView extends BorderPane {
     private NormalVisionController controller;
@@ -34,6 +37,7 @@ public class NormalVisionView extends BorderPane {
     private TextField maxAmountField;
     private ComboBox<String> currencyComboBox;
     private ToggleGroup transactionTypeGroup;
+    private CheckBox anomaliesOnlyCheckBox;
     private ObservableList<Transaction> transactions;
     private Label incomeSumLabel;
     private Label expenseSumLabel;
@@ -72,7 +76,11 @@ public class NormalVisionView extends BorderPane {
         expenseRadio.setToggleGroup(transactionTypeGroup);
         expenseRadio.setUserData("EXPENSE");
 
-        typeBox.getChildren().addAll(typeLabel, allRadio, incomeRadio, expenseRadio);
+        // Anomalies filter: only transactions flagged by the anomaly detector
+        anomaliesOnlyCheckBox = new CheckBox("Anomalies only");
+        anomaliesOnlyCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+
+        typeBox.getChildren().addAll(typeLabel, allRadio, incomeRadio, expenseRadio, anomaliesOnlyCheckBox);
         filterGrid.add(typeBox, 0, 0);
 
         // Add listeners to radio buttons to apply filters automatically
@@ -341,7 +349,8 @@ public class NormalVisionView extends BorderPane {
                 startDate,
                 endDate,
                 minAmount,
-                maxAmount
+                maxAmount,
+                anomaliesOnlyCheckBox.isSelected()
         );
 
         transactions.setAll(filtered);
@@ -379,6 +388,14 @@ public class NormalVisionView extends BorderPane {
                 alert.setContentText("Successfully imported " + imported.size() + " transactions.");
                 alert.showAndWait();
 
+                // Budgets the import pushed past a threshold
+                List<BudgetAlert> budgetAlerts = controller.takeBudgetAlerts();
+                if (!budgetAlerts.isEmpty()) {
+                    DialogUtil.showWarningDialog("Budget Alert", budgetAlerts.stream()
+                            .map(controller::describeBudgetAlert)
+                            .collect(Collectors.joining("\n")));
+                }
+
                 // Refresh the table
                 loadTransactions();
             } catch (IOException e) {
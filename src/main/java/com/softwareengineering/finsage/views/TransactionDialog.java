@@ -2,9 +2,11 @@
 package com.softwareengineering.finsage.views;
 
 import com.softwareengineering.finsage.controllers.TransactionController;
+import com.softwareengineering.finsage.model.BudgetAlert;
 import com.softwareengineering.finsage.model.Category;
 import com.softwareengineering.finsage.model.Transaction;
 import com.softwareengineering.finsage.utils.CategoryInferer;
+import com.softwareengineering.finsage.utils.DialogUtil;
 import com.softwareengineering.finsage.utils.UserLoginState;
 import com.softwareengineering.finsage.validator.Validator;
 import javafx.collections.FXCollections;
@@ -21,6 +23,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class TransactionDialog {
     private Stage stage;
@@ -207,11 +210,21 @@ public class TransactionDialog {
 
         if (controller.addTransaction(transaction)) {
             stage.close();
+            showBudgetAlerts();
         } else {
             showAlert("Error", "Failed to add transaction.");
         }
     }
 
+    private void showBudgetAlerts() {
+        List<BudgetAlert> alerts = controller.takeBudgetAlerts();
+        if (!alerts.isEmpty()) {
+            DialogUtil.showWarningDialog("Budget Alert", alerts.stream()
+                    .map(controller::describeBudgetAlert)
+                    .collect(Collectors.joining("\n")));
+        }
+    }
+
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);